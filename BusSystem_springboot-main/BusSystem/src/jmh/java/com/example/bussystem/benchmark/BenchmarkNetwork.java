@@ -0,0 +1,100 @@
+package com.example.bussystem.benchmark;
+
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.support.SyntheticNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基准测试用的路网数据，不依赖数据库
+ *   - dump：解析 bus_system_dump.sql（默认取仓库根目录下的文件，可用 -Dbench.dump=路径 指定）
+ *   - city：固定种子生成的城市规模合成路网（1 万站点、2000 条线路）
+ */
+public class BenchmarkNetwork {
+
+    private static final Pattern STATION = Pattern.compile("\\((\\d+), '([^']*)', ([\\d.]+), ([\\d.]+)\\)");
+    private static final Pattern ROAD = Pattern.compile("\\((\\d+), '([^']*)', '([^']*)', '([^']*)', '([^']*)', (\\d+)\\)");
+    private static final Pattern LINE_STATION = Pattern.compile("\\((\\d+), (\\d+), (\\d+)\\)");
+
+    private final List<Station> stations = new ArrayList<>();
+    private final List<Road> roads = new ArrayList<>();
+    private final List<LineStation> relations = new ArrayList<>();
+
+    /** 按名称加载路网，对应各基准的 network 参数 */
+    public static BenchmarkNetwork load(String source) {
+        if ("city".equals(source)) {
+            SyntheticNetwork city = SyntheticNetwork.cityScale(42);
+            BenchmarkNetwork network = new BenchmarkNetwork();
+            network.stations.addAll(city.getStations());
+            network.roads.addAll(city.getRoads());
+            network.relations.addAll(city.getRelations());
+            return network;
+        }
+        if (!"dump".equals(source)) throw new IllegalArgumentException("未知的路网: " + source);
+        Path path = Path.of(System.getProperty("bench.dump", "../../bus_system_dump.sql"));
+        try {
+            return parse(Files.readString(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法读取路网数据: " + path.toAbsolutePath(), e);
+        }
+    }
+
+    static BenchmarkNetwork parse(String sql) {
+        BenchmarkNetwork network = new BenchmarkNetwork();
+        // 按 INSERT 语句切分，每段只包含一张表的数据
+        for (String statement : sql.split("INSERT INTO ")) {
+            if (statement.startsWith("stations")) {
+                Matcher m = STATION.matcher(statement);
+                while (m.find()) {
+                    Station s = new Station();
+                    s.setStationId(Integer.parseInt(m.group(1)));
+                    s.setStationName(m.group(2));
+                    s.setLongitude(Double.parseDouble(m.group(3)));
+                    s.setLatitude(Double.parseDouble(m.group(4)));
+                    network.stations.add(s);
+                }
+            } else if (statement.startsWith("roads")) {
+                Matcher m = ROAD.matcher(statement);
+                while (m.find()) {
+                    Road r = new Road();
+                    r.setLineOrder(Integer.parseInt(m.group(1)));
+                    r.setLineName(m.group(2));
+                    r.setDirection(m.group(3));
+                    r.setStartTime(Time.valueOf(m.group(4)));
+                    r.setFinishTime(Time.valueOf(m.group(5)));
+                    r.setIntervalTime(Integer.parseInt(m.group(6)));
+                    network.roads.add(r);
+                }
+            } else if (statement.startsWith("line_stations")) {
+                Matcher m = LINE_STATION.matcher(statement);
+                while (m.find()) {
+                    LineStation ls = new LineStation();
+                    ls.setLineOrder(Integer.parseInt(m.group(1)));
+                    ls.setStationId(Integer.parseInt(m.group(2)));
+                    ls.setSequenceNo(Integer.parseInt(m.group(3)));
+                    network.relations.add(ls);
+                }
+            }
+        }
+        return network;
+    }
+
+    public NetworkSnapshot snapshot() {
+        return NetworkSnapshot.build(stations, roads, relations);
+    }
+
+    public List<Station> getStations() { return stations; }
+    public List<Road> getRoads() { return roads; }
+    public List<LineStation> getRelations() { return relations; }
+}
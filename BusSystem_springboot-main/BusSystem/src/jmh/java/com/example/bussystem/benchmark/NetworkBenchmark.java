@@ -0,0 +1,73 @@
+package com.example.bussystem.benchmark;
+
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.service.PathFindingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与搜索引擎无关的部分：站点输入解析，以及 loadData 中构建路网快照的耗时（不含读库）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkBenchmark {
+
+    private static final int QUERY_COUNT = 256;
+
+    // 路网来源：dump(长沙数据) / city(城市规模合成路网)，用 -p network=dump,city 同时测量
+    @Param({"dump"})
+    private String network;
+
+    private BenchmarkNetwork data;
+    private PathFindingService service;
+    private String[] stationQueries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkNetwork.load(network);
+        NetworkSnapshot snapshot = data.snapshot();
+        service = new PathFindingService();
+        service.publish(snapshot);
+
+        List<Integer> ids = new ArrayList<>(snapshot.getStationMap().keySet());
+        Collections.sort(ids);
+        Random rnd = new Random(42);
+        stationQueries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            Integer id = ids.get(rnd.nextInt(ids.size()));
+            String name = snapshot.getStationMap().get(id).getStationName();
+            // 三种输入轮换：编号、完整站名、站名前两个字
+            stationQueries[i] = switch (i % 3) {
+                case 0 -> "" + id;
+                case 1 -> name;
+                default -> name.substring(0, Math.min(2, name.length()));
+            };
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public Integer parseStationId() {
+        return service.parseStationId(stationQueries[next++ & (QUERY_COUNT - 1)]);
+    }
+
+    // loadData 读库之后的全部工作；发布时在后台构建的最少换乘矩阵不计入
+    @Benchmark
+    public NetworkSnapshot loadData() {
+        return NetworkSnapshot.build(data.getStations(), data.getRoads(), data.getRelations());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bussystem.benchmark;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.service.PathFindingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径规划热点路径：findRoutes，按引擎和换乘次数分别测量
+ * 起终点由固定种子生成，结果缓存关闭，每次调用都完整搜索
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathFindingBenchmark {
+
+    private static final int QUERY_COUNT = 256;
+
+    // 路网来源：dump(长沙数据) / city(城市规模合成路网)，用 -p network=dump,city 同时测量
+    @Param({"dump"})
+    private String network;
+
+    @Param({"raptor", "bfs"})
+    private String engine;
+
+    @Param({"0", "1", "2", "3"})
+    private int maxTransfers;
+
+    private PathFindingService service;
+    private String[][] pairs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NetworkSnapshot snapshot = BenchmarkNetwork.load(network).snapshot();
+        // 最少换乘矩阵平时在后台构建，这里先建好，避免测量期间一部分查询没有剪枝
+        snapshot.buildTransferMatrix();
+
+        service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", engine);
+        service.setPlanCacheSize(0);
+        service.publish(snapshot);
+
+        List<Integer> ids = new ArrayList<>(snapshot.getStationMap().keySet());
+        Collections.sort(ids);
+        Random rnd = new Random(42);
+        pairs = new String[QUERY_COUNT][];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            pairs[i] = new String[]{"" + ids.get(rnd.nextInt(ids.size())), "" + ids.get(rnd.nextInt(ids.size()))};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public List<RouteResultDTO> findRoutes() {
+        String[] pair = pairs[next++ & (QUERY_COUNT - 1)];
+        return service.findRoutes(pair[0], pair[1], maxTransfers);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bussystem.benchmark;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.service.PathFindingService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规划结果的 JSON 序列化（/api/routes/plan 响应体），ObjectMapper 与 Spring MVC 默认配置一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteSerializationBenchmark {
+
+    private static final int RESPONSE_COUNT = 64;
+
+    // 路网来源：dump(长沙数据) / city(城市规模合成路网)，用 -p network=dump,city 同时测量
+    @Param({"dump"})
+    private String network;
+
+    private ObjectMapper mapper;
+    private List<List<RouteResultDTO>> responses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+
+        NetworkSnapshot snapshot = BenchmarkNetwork.load(network).snapshot();
+        PathFindingService service = new PathFindingService();
+        service.publish(snapshot);
+        List<Integer> ids = new ArrayList<>(snapshot.getStationMap().keySet());
+        Collections.sort(ids);
+        Random rnd = new Random(42);
+        // 只收集有方案的响应，空列表的序列化没有参考价值
+        responses = new ArrayList<>();
+        while (responses.size() < RESPONSE_COUNT) {
+            List<RouteResultDTO> routes = service.findRoutes("" + ids.get(rnd.nextInt(ids.size())),
+                    "" + ids.get(rnd.nextInt(ids.size())), 2);
+            if (!routes.isEmpty()) responses.add(routes);
+        }
+        service.shutdown();
+    }
+
+    @Benchmark
+    public byte[] serializeRoutes() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(responses.get(next++ & (RESPONSE_COUNT - 1)));
+    }
+}
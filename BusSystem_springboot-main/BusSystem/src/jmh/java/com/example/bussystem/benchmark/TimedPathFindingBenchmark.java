@@ -0,0 +1,108 @@
+package com.example.bussystem.benchmark;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.service.PathFindingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * csa 与 raptor、bfs 在同一批起终点上的对照
+ * csa 只实现了按时刻表搜索（服务配置为 csa 时，不带出发时刻的查询实际由 raptor 完成），bfs 只有静态搜索，
+ * 两者没有同一种查询可比，因此分两组测量，起终点（与 PathFindingBenchmark 相同）和换乘次数完全一致：
+ *   timedCsa / timedRaptor：findRoutes(..., departAt)，按出发时刻规划，不走结果缓存；
+ *   staticRaptor / staticBfs：findRoutes(...)，静态规划，结果缓存关闭。
+ * csa 与 bfs 的差距可经 raptor 两组结果换算，按时刻表规划额外的开销见 timedRaptor 与 staticRaptor 之比。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimedPathFindingBenchmark {
+
+    private static final int QUERY_COUNT = 256;
+
+    @Param({"dump"})
+    private String network;
+
+    @Param({"0", "1", "2", "3"})
+    private int maxTransfers;
+
+    @Param({"08:00"})
+    private String departAt;
+
+    private PathFindingService csa;
+    private PathFindingService raptor;
+    private PathFindingService bfs;
+    private LocalTime departTime;
+    private String[][] pairs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NetworkSnapshot snapshot = BenchmarkNetwork.load(network).snapshot();
+        snapshot.buildTransferMatrix();
+
+        // 三个服务共用同一个快照；csa 的 publish 会先建好连接表，构建耗时不计入测量
+        csa = service(snapshot, "csa");
+        raptor = service(snapshot, "raptor");
+        bfs = service(snapshot, "bfs");
+        departTime = LocalTime.parse(departAt);
+
+        List<Integer> ids = new ArrayList<>(snapshot.getStationMap().keySet());
+        Collections.sort(ids);
+        Random rnd = new Random(42);
+        pairs = new String[QUERY_COUNT][];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            pairs[i] = new String[]{"" + ids.get(rnd.nextInt(ids.size())), "" + ids.get(rnd.nextInt(ids.size()))};
+        }
+    }
+
+    private static PathFindingService service(NetworkSnapshot snapshot, String engine) {
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", engine);
+        service.setPlanCacheSize(0);
+        service.publish(snapshot);
+        return service;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        csa.shutdown();
+        raptor.shutdown();
+        bfs.shutdown();
+    }
+
+    @Benchmark
+    public List<RouteResultDTO> timedCsa() {
+        String[] pair = pairs[next++ & (QUERY_COUNT - 1)];
+        return csa.findRoutes(pair[0], pair[1], maxTransfers, departTime);
+    }
+
+    @Benchmark
+    public List<RouteResultDTO> timedRaptor() {
+        String[] pair = pairs[next++ & (QUERY_COUNT - 1)];
+        return raptor.findRoutes(pair[0], pair[1], maxTransfers, departTime);
+    }
+
+    @Benchmark
+    public List<RouteResultDTO> staticRaptor() {
+        String[] pair = pairs[next++ & (QUERY_COUNT - 1)];
+        return raptor.findRoutes(pair[0], pair[1], maxTransfers);
+    }
+
+    @Benchmark
+    public List<RouteResultDTO> staticBfs() {
+        String[] pair = pairs[next++ & (QUERY_COUNT - 1)];
+        return bfs.findRoutes(pair[0], pair[1], maxTransfers);
+    }
+}
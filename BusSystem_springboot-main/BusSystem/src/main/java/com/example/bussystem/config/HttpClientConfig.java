@@ -0,0 +1,32 @@
+package com.example.bussystem.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * 外部 HTTP 调用（百度地理编码）使用的共享客户端
+ * 整个应用只建一个 HttpClient，连接在请求之间复用；连接、读取都有超时，外部接口变慢时请求线程不会被长时间占住
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public RestTemplate geocodingRestTemplate(RestTemplateBuilder builder,
+                                              @Value("${bus.geocoding.connect-timeout-ms:1000}") long connectTimeout,
+                                              @Value("${bus.geocoding.read-timeout-ms:2000}") long readTimeout) {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(client);
+        factory.setReadTimeout(Duration.ofMillis(readTimeout));
+        return builder.requestFactory(() -> factory).build();
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.bussystem.controller;
 
 import com.example.bussystem.entity.Station;
+import com.example.bussystem.planner.RoutePlanCache;
 import com.example.bussystem.service.BusDataService;
+import com.example.bussystem.service.PathFindingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +20,9 @@ public class BusAdminController {
     @Autowired
     private BusDataService dataService;
 
+    @Autowired
+    private PathFindingService pathFindingService;
+
     // ==========================================
     //               站点管理 (Station)
     // ==========================================
@@ -85,6 +91,32 @@ public class BusAdminController {
         return Map.of("success", success, "message", msg);
     }
 
+    // 全量重新加载路网缓存
+    // POST /api/admin/reload
+    @PostMapping("/reload")
+    public Map<String, Object> reload() {
+        String msg = dataService.reloadGraph();
+        boolean success = msg.startsWith("成功");
+        return Map.of("success", success, "message", msg);
+    }
+
+    // 路径规划缓存统计（命中/未命中/淘汰次数，以及被合并的并发请求数）
+    // GET /api/admin/cache
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        RoutePlanCache cache = pathFindingService.getPlanCache();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("capacity", cache.getCapacity());
+        stats.put("hits", cache.getHits());
+        stats.put("misses", cache.getMisses());
+        stats.put("evictions", cache.getEvictions());
+        stats.put("hitRatio", cache.getHitRatio());
+        stats.put("coalesced", pathFindingService.getPlanCoalescer().getCoalesced());
+        stats.put("inFlight", pathFindingService.getPlanCoalescer().inFlightCount());
+        return Map.of("code", 200, "data", stats);
+    }
+
     // ==========================================
     //                内部辅助方法
     // ==========================================
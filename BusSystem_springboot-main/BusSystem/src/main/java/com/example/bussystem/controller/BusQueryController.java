@@ -1,17 +1,29 @@
 package com.example.bussystem.controller;
 
+import com.example.bussystem.dto.NearbyStationDTO;
 import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.dto.StationSuggestionDTO;
 import com.example.bussystem.entity.Road;
 import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.graph.StationPrefixTrie;
+import com.example.bussystem.graph.StationSpatialIndex;
 import com.example.bussystem.service.PathFindingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,12 +44,8 @@ public class BusQueryController {
     @GetMapping("/routes")
     @Operation(summary = "获取所有线路", description = "返回所有公交线路信息")
     public List<Road> getAllRoutes() {
-        List<Road> roads = new ArrayList<>(busService.getRoadMap().values());
-        for (Road r : roads) {
-            // 注意：确保 Road 实体里的 setStationIds 字段不会导致数据库写入异常（如果是JPA）
-            r.setStationIds(busService.getLineToStationsMap().get(r.getLineOrder()));
-        }
-        return roads;
+        // stationIds 已在构建快照时回填（@Transient 字段，不会写入数据库）
+        return new ArrayList<>(busService.getRoadMap().values());
     }
 
     @GetMapping("/stations/search")
@@ -45,19 +53,65 @@ public class BusQueryController {
     public List<Station> findStations(
             @Parameter(description = "站点ID(数字) 或 站点名称(中文)") @RequestParam String query
     ) {
-        List<Station> res = new ArrayList<>();
+        NetworkSnapshot snap = busService.getSnapshot();
+        Map<Integer, Station> stationMap = snap.getStationMap();
+        // ID 精确命中排在最前，其后按名称匹配程度排序；用有序集合去重
+        Set<Integer> ids = new LinkedHashSet<>();
         if (query.matches("\\d+")) {
             Integer id = Integer.parseInt(query);
-            if (busService.getStationMap().containsKey(id)) {
-                res.add(busService.getStationMap().get(id));
+            if (stationMap.containsKey(id)) {
+                ids.add(id);
             }
         }
-        for (Station s : busService.getStationMap().values()) {
-            if (s.getStationName().contains(query)) {
-                if (!res.contains(s)) res.add(s);
+        ids.addAll(snap.getStationNameIndex().search(query, Integer.MAX_VALUE));
+        return ids.stream()
+                .map(stationMap::get)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/stations/suggest")
+    @Operation(summary = "站点输入提示", description = "按站名前缀或拼音首字母（如 hcz -> 火车站）联想，返回站点ID、名称和坐标")
+    public List<StationSuggestionDTO> suggestStations(
+            @Parameter(description = "已输入的内容") @RequestParam String prefix,
+            @Parameter(description = "返回条数，最多 20") @RequestParam(defaultValue = "10") int limit
+    ) {
+        NetworkSnapshot snap = busService.getSnapshot();
+        int k = Math.min(limit, StationPrefixTrie.MAX_SUGGESTIONS);
+
+        // 前缀树命中不足时，用站名中间包含该内容的站点补足；
+        // 只输入一个字时不补：常见单字几乎出现在每个站名里，补足要扫过大部分站点
+        Set<Integer> ids = new LinkedHashSet<>(snap.getStationPrefixTrie().suggest(prefix, k));
+        if (ids.size() < k && prefix.trim().length() > 1) {
+            for (Integer sid : snap.getStationNameIndex().search(prefix, k)) {
+                ids.add(sid);
+                if (ids.size() >= k) break;
             }
         }
-        return res;
+        return ids.stream()
+                .map(sid -> {
+                    Station s = snap.getStationMap().get(sid);
+                    return new StationSuggestionDTO(sid, s.getStationName(), s.getLongitude(), s.getLatitude());
+                })
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/stations/nearby")
+    @Operation(summary = "附近站点", description = "按经纬度返回最近的 K 个站点及直线距离")
+    public List<NearbyStationDTO> nearbyStations(
+            @Parameter(description = "纬度") @RequestParam double lat,
+            @Parameter(description = "经度") @RequestParam double lng,
+            @Parameter(description = "返回条数，1 ~ 50") @RequestParam(defaultValue = "5") int k
+    ) {
+        requireCoordinate(lat, lng);
+        NetworkSnapshot snap = busService.getSnapshot();
+        // 条数超出范围时按边界处理
+        return snap.getStationSpatialIndex().nearest(lat, lng, Math.max(1, Math.min(k, 50))).stream()
+                .map(n -> {
+                    Station s = snap.getStationMap().get(n.stationId());
+                    return new NearbyStationDTO(n.stationId(), s.getStationName(),
+                            s.getLongitude(), s.getLatitude(), (int) Math.round(n.meters()));
+                })
+                .collect(Collectors.toList());
     }
 
     @GetMapping("/station/{identifier}/lines")
@@ -65,12 +119,13 @@ public class BusQueryController {
     public List<Road> getLinesByStation(
             @Parameter(description = "站点ID 或 站点名称") @PathVariable String identifier
     ) {
-        Integer sid = busService.parseStationId(identifier);
+        NetworkSnapshot snap = busService.getSnapshot();
+        Integer sid = busService.parseStationId(snap, identifier);
         if (sid == null) return new ArrayList<>();
 
-        return busService.getStationToLinesMap().getOrDefault(sid, java.util.Collections.emptySet())
+        return snap.getStationToLinesMap().getOrDefault(sid, java.util.Collections.emptySet())
                 .stream()
-                .map(lid -> busService.getRoadMap().get(lid))
+                .map(lid -> snap.getRoadMap().get(lid))
                 .collect(Collectors.toList());
     }
 
@@ -79,11 +134,12 @@ public class BusQueryController {
     public List<Station> getStationsByLine(
             @Parameter(description = "线路ID 或 线路名称") @PathVariable String identifier
     ) {
+        NetworkSnapshot snap = busService.getSnapshot();
         Integer lid = null;
         if (identifier.matches("\\d+")) {
             lid = Integer.parseInt(identifier);
         } else {
-            for (Road r : busService.getRoadMap().values()) {
+            for (Road r : snap.getRoadMap().values()) {
                 if (r.getLineName().equals(identifier)) {
                     lid = r.getLineOrder();
                     break;
@@ -91,10 +147,10 @@ public class BusQueryController {
             }
         }
 
-        if (lid == null || !busService.getLineToStationsMap().containsKey(lid)) return new ArrayList<>();
+        if (lid == null || !snap.getLineToStationsMap().containsKey(lid)) return new ArrayList<>();
 
-        return busService.getLineToStationsMap().get(lid).stream()
-                .map(sid -> busService.getStationMap().get(sid))
+        return snap.getLineToStationsMap().get(lid).stream()
+                .map(sid -> snap.getStationMap().get(sid))
                 .collect(Collectors.toList());
     }
 
@@ -103,7 +159,30 @@ public class BusQueryController {
     public List<RouteResultDTO> planRoute(
             @Parameter(description = "起点（名称或ID）") @RequestParam String start,
             @Parameter(description = "终点（名称或ID）") @RequestParam String end,
+            @Parameter(description = "最大换乘次数") @RequestParam(defaultValue = "1") int maxTransfers,
+            @Parameter(description = "出发时刻 HH:mm，填写后按首末班和发车间隔计算实际等车时间")
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime departAt) {
+        return busService.findRoutes(start, end, maxTransfers, departAt);
+    }
+
+    @GetMapping("/routes/plan/location")
+    @Operation(summary = "按坐标规划路线", description = "输入出发点和目的地的经纬度，从步行范围内的站点中选择上下车站")
+    public List<RouteResultDTO> planRouteByLocation(
+            @Parameter(description = "出发点纬度") @RequestParam double fromLat,
+            @Parameter(description = "出发点经度") @RequestParam double fromLng,
+            @Parameter(description = "目的地纬度") @RequestParam double toLat,
+            @Parameter(description = "目的地经度") @RequestParam double toLng,
             @Parameter(description = "最大换乘次数") @RequestParam(defaultValue = "1") int maxTransfers) {
-        return busService.findRoutes(start, end, maxTransfers);
+        requireCoordinate(fromLat, fromLng);
+        requireCoordinate(toLat, toLng);
+        return busService.findRoutesByLocation(fromLat, fromLng, toLat, toLng, maxTransfers);
+    }
+
+    // 经纬度超出范围或为 NaN 时直接返回 400，不进入空间索引
+    private static void requireCoordinate(double lat, double lng) {
+        if (!StationSpatialIndex.isValidCoordinate(lat, lng)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "经纬度不合法: lat=" + lat + ", lng=" + lng + "，纬度应在 [-90, 90]，经度应在 [-180, 180]");
+        }
     }
 }
\ No newline at end of file
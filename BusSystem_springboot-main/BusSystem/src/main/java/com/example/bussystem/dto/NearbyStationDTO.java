@@ -0,0 +1,26 @@
+package com.example.bussystem.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearbyStationDTO {
+    @Schema(description = "站点ID")
+    private Integer stationId;
+
+    @Schema(description = "站点名称")
+    private String stationName;
+
+    @Schema(description = "经度")
+    private Double longitude;
+
+    @Schema(description = "纬度")
+    private Double latitude;
+
+    @Schema(description = "直线距离(米)")
+    private Integer distance;
+}
@@ -22,4 +22,19 @@ public class RouteResultDTO {
 
 
     private Integer totalStops;
+
+    @Schema(description = "按坐标规划时，从出发点步行到上车站的距离(米)")
+    private Integer startWalkMeters;
+
+    @Schema(description = "按坐标规划时，从下车站步行到目的地的距离(米)")
+    private Integer endWalkMeters;
+
+    @Schema(description = "按出发时刻规划时的出发时刻 HH:mm")
+    private String departureTime;
+
+    @Schema(description = "按出发时刻规划时的预计到达时刻 HH:mm")
+    private String arrivalTime;
+
+    @Schema(description = "搜索预算用完、提前结束时为 true：方案是截止时已找到的，不保证最优或完整")
+    private Boolean partial;
 }
\ No newline at end of file
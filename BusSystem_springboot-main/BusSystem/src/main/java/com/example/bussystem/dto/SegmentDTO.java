@@ -19,4 +19,9 @@ public class SegmentDTO {
     private List<Station> stationDetails;
     private Integer stopsCount;
     private Integer segmentDuration;
+    private Integer walkDistance; // 步行换乘段的距离(米)，此时 lineOrder 为空；乘车段为 null
+    // 以下仅在按出发时刻规划时填写
+    private String departureTime; // 上车时刻 HH:mm
+    private String arrivalTime; // 下车时刻 HH:mm
+    private Integer waitMinutes; // 上车前的等车时间(分钟)
 }
\ No newline at end of file
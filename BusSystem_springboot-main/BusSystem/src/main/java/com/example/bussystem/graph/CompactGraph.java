@@ -0,0 +1,306 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.Road;
+
+import java.util.*;
+
+/**
+ * 扁平化路网（随快照一起构建，只读）
+ * 站点、线路在内部使用从 0 开始的稠密编号，邻接关系以 CSR 形式存放在 int 数组中，
+ * 供换乘搜索引擎按下标直接访问，避免在查询路径上操作装箱集合。
+ */
+public final class CompactGraph {
+
+    // 未设置发车间隔时按 5 分钟估算（与 createRoute 保持一致）
+    public static final int DEFAULT_INTERVAL = 5;
+    // 每次换乘额外计入的时间(分钟)
+    public static final int TRANSFER_PENALTY = 10;
+
+    // 稠密编号 -> 站点ID / 线路ID
+    private final int[] stationIds;
+    private final int[] lineIds;
+    // 站点ID / 线路ID -> 稠密编号
+    private final Map<Integer, Integer> stationIndex;
+    private final Map<Integer, Integer> lineIndex;
+
+    // 线路 -> 有序站点：lineStops[lineStopOffsets[l] .. lineStopOffsets[l+1])
+    private final int[] lineStopOffsets;
+    private final int[] lineStops;
+    // 站点 -> 经过的线路：stopLines[stopLineOffsets[s] .. stopLineOffsets[s+1])
+    private final int[] stopLineOffsets;
+    private final int[] stopLines;
+    // 与 stopLines 一一对应：该站在该线路上第一次 / 最后一次出现的位置（环线首末站相同时两者不同）
+    private final int[] stopLineFirstPos;
+    private final int[] stopLineLastPos;
+    // 线路 -> 每站耗时(分钟)
+    private final int[] lineInterval;
+    // 线路 -> 线路名编号：同名线路（如上下行分开录入）取相同的值
+    private final int[] lineNameKey;
+
+    private CompactGraph(int[] stationIds, int[] lineIds,
+                         Map<Integer, Integer> stationIndex, Map<Integer, Integer> lineIndex,
+                         int[] lineStopOffsets, int[] lineStops,
+                         int[] stopLineOffsets, int[] stopLines,
+                         int[] stopLineFirstPos, int[] stopLineLastPos, int[] lineInterval, int[] lineNameKey) {
+        this.stationIds = stationIds;
+        this.lineIds = lineIds;
+        this.stationIndex = stationIndex;
+        this.lineIndex = lineIndex;
+        this.lineStopOffsets = lineStopOffsets;
+        this.lineStops = lineStops;
+        this.stopLineOffsets = stopLineOffsets;
+        this.stopLines = stopLines;
+        this.stopLineFirstPos = stopLineFirstPos;
+        this.stopLineLastPos = stopLineLastPos;
+        this.lineInterval = lineInterval;
+        this.lineNameKey = lineNameKey;
+    }
+
+    static CompactGraph build(Set<Integer> stationKeys, Map<Integer, Road> roadMap,
+                              Map<Integer, List<Integer>> lineToStationsMap) {
+        // 1. 稠密编号：按 ID 升序分配，保证同一份数据每次构建结果一致
+        TreeSet<Integer> allStations = new TreeSet<>(stationKeys);
+        for (List<Integer> seq : lineToStationsMap.values()) {
+            allStations.addAll(seq);
+        }
+        int[] stationIds = new int[allStations.size()];
+        Map<Integer, Integer> stationIndex = new HashMap<>(allStations.size() * 2);
+        int n = 0;
+        for (Integer sid : allStations) {
+            stationIndex.put(sid, n);
+            stationIds[n++] = sid;
+        }
+        return assemble(stationIds, stationIndex, roadMap, lineToStationsMap);
+    }
+
+    /**
+     * 只有线路变化时重建：站点集合与 base 相同则沿用其站点编号（站点编号相关的结构因此可以原样复用），
+     * 否则与 build 相同
+     */
+    static CompactGraph rebuildLines(CompactGraph base, Set<Integer> stationKeys, Map<Integer, Road> roadMap,
+                                     Map<Integer, List<Integer>> lineToStationsMap) {
+        boolean[] present = new boolean[base.stationCount()];
+        int count = 0;
+        for (Integer sid : stationKeys) {
+            int s = base.stopIndexOf(sid);
+            if (s < 0) return build(stationKeys, roadMap, lineToStationsMap);
+            if (!present[s]) { present[s] = true; count++; }
+        }
+        for (List<Integer> seq : lineToStationsMap.values()) {
+            for (Integer sid : seq) {
+                int s = base.stopIndexOf(sid);
+                if (s < 0) return build(stationKeys, roadMap, lineToStationsMap);
+                if (!present[s]) { present[s] = true; count++; }
+            }
+        }
+        if (count != base.stationCount()) return build(stationKeys, roadMap, lineToStationsMap);
+        return assemble(base.stationIds, base.stationIndex, roadMap, lineToStationsMap);
+    }
+
+    /** 两个图的站点编号是否一致（同一份编号数组） */
+    boolean sameStopsAs(CompactGraph other) {
+        return stationIds == other.stationIds;
+    }
+
+    /** 本图的站点编号 -> other 中同一站点的编号，other 中没有该站点为 -1 */
+    int[] stopMapping(CompactGraph other) {
+        int[] map = new int[stationIds.length];
+        for (int s = 0; s < map.length; s++) {
+            map[s] = sameStopsAs(other) ? s : other.stopIndexOf(stationIds[s]);
+        }
+        return map;
+    }
+
+    private static CompactGraph assemble(int[] stationIds, Map<Integer, Integer> stationIndex,
+                                         Map<Integer, Road> roadMap, Map<Integer, List<Integer>> lineToStationsMap) {
+        List<Integer> sortedLines = new ArrayList<>(lineToStationsMap.keySet());
+        Collections.sort(sortedLines);
+        int[] lineIds = new int[sortedLines.size()];
+        Map<Integer, Integer> lineIndex = new HashMap<>(sortedLines.size() * 2);
+        for (int l = 0; l < lineIds.length; l++) {
+            lineIds[l] = sortedLines.get(l);
+            lineIndex.put(lineIds[l], l);
+        }
+
+        // 2. 线路 -> 站点 CSR
+        int[] lineStopOffsets = new int[lineIds.length + 1];
+        for (int l = 0; l < lineIds.length; l++) {
+            lineStopOffsets[l + 1] = lineStopOffsets[l] + lineToStationsMap.get(lineIds[l]).size();
+        }
+        int[] lineStops = new int[lineStopOffsets[lineIds.length]];
+        int[] lineInterval = new int[lineIds.length];
+        int[] lineNameKey = new int[lineIds.length];
+        Map<String, Integer> nameKeys = new HashMap<>();
+        int[] stopDegree = new int[stationIds.length];
+        for (int l = 0; l < lineIds.length; l++) {
+            int p = lineStopOffsets[l];
+            for (Integer sid : lineToStationsMap.get(lineIds[l])) {
+                int s = stationIndex.get(sid);
+                lineStops[p++] = s;
+                stopDegree[s]++;
+            }
+            Road road = roadMap.get(lineIds[l]);
+            Integer interval = road == null ? null : road.getIntervalTime();
+            lineInterval[l] = (interval != null && interval > 0) ? interval : DEFAULT_INTERVAL;
+            String name = road == null ? null : road.getLineName();
+            lineNameKey[l] = name == null ? -1 - l : nameKeys.computeIfAbsent(name, k -> nameKeys.size());
+        }
+
+        // 3. 站点 -> 线路 CSR，附带该站在线路上的位置
+        //    同一线路在环线中可能多次经过同一站，这里只记一条，保留首末两个位置
+        int[] stopLineOffsets = new int[stationIds.length + 1];
+        int[] stopLinesTmp = new int[lineStops.length];
+        int[] stopPosTmp = new int[lineStops.length];
+        int[] cursor = new int[stationIds.length];
+        for (int s = 0; s < stationIds.length; s++) {
+            stopLineOffsets[s + 1] = stopLineOffsets[s] + stopDegree[s];
+            cursor[s] = stopLineOffsets[s];
+        }
+        for (int l = 0; l < lineIds.length; l++) {
+            for (int p = lineStopOffsets[l]; p < lineStopOffsets[l + 1]; p++) {
+                int c = cursor[lineStops[p]]++;
+                stopLinesTmp[c] = l;
+                stopPosTmp[c] = p - lineStopOffsets[l];
+            }
+        }
+        int[] dedupOffsets = new int[stationIds.length + 1];
+        int[] firstPos = new int[lineStops.length];
+        int[] lastPos = new int[lineStops.length];
+        int w = 0;
+        for (int s = 0; s < stationIds.length; s++) {
+            dedupOffsets[s] = w;
+            int last = -1;
+            for (int i = stopLineOffsets[s]; i < stopLineOffsets[s + 1]; i++) {
+                // 线路按编号递增、位置按先后写入，重复项必然相邻
+                if (stopLinesTmp[i] != last) {
+                    last = stopLinesTmp[i];
+                    stopLinesTmp[w] = last;
+                    firstPos[w] = stopPosTmp[i];
+                    lastPos[w] = stopPosTmp[i];
+                    w++;
+                } else {
+                    lastPos[w - 1] = stopPosTmp[i];
+                }
+            }
+        }
+        dedupOffsets[stationIds.length] = w;
+
+        return new CompactGraph(stationIds, lineIds, stationIndex, lineIndex,
+                lineStopOffsets, lineStops, dedupOffsets, Arrays.copyOf(stopLinesTmp, w),
+                Arrays.copyOf(firstPos, w), Arrays.copyOf(lastPos, w), lineInterval, lineNameKey);
+    }
+
+    // --- 编号换算 ---
+
+    public int stationCount() { return stationIds.length; }
+    public int lineCount() { return lineIds.length; }
+
+    /** 站点ID -> 稠密编号，不存在返回 -1 */
+    public int stopIndexOf(Integer sid) {
+        Integer idx = stationIndex.get(sid);
+        return idx == null ? -1 : idx;
+    }
+
+    /** 线路ID -> 稠密编号，不存在返回 -1 */
+    public int lineIndexOf(Integer lineOrder) {
+        Integer idx = lineIndex.get(lineOrder);
+        return idx == null ? -1 : idx;
+    }
+
+    public int stationId(int stop) { return stationIds[stop]; }
+    public int lineId(int line) { return lineIds[line]; }
+
+    // --- 邻接访问 ---
+
+    public int lineStopsStart(int line) { return lineStopOffsets[line]; }
+    public int lineStopsEnd(int line) { return lineStopOffsets[line + 1]; }
+    public int lineLength(int line) { return lineStopOffsets[line + 1] - lineStopOffsets[line]; }
+    /** 线路第 pos 个站点（pos 从 0 开始） */
+    public int stopAt(int line, int pos) { return lineStops[lineStopOffsets[line] + pos]; }
+
+    public int stopLinesStart(int stop) { return stopLineOffsets[stop]; }
+    public int stopLinesEnd(int stop) { return stopLineOffsets[stop + 1]; }
+    public int stopLineAt(int i) { return stopLines[i]; }
+
+    public int interval(int line) { return lineInterval[line]; }
+    public int lineNameKey(int line) { return lineNameKey[line]; }
+
+    // --- 位置索引（替代 List.indexOf） ---
+
+    /** 站点在线路上第一次出现的位置，不经过返回 -1 */
+    public int positionOf(int line, int stop) {
+        int i = findStopLine(line, stop);
+        return i < 0 ? -1 : stopLineFirstPos[i];
+    }
+
+    /** 站点在线路上最后一次出现的位置，不经过返回 -1 */
+    public int lastPositionOf(int line, int stop) {
+        int i = findStopLine(line, stop);
+        return i < 0 ? -1 : stopLineLastPos[i];
+    }
+
+    // 一个站点经过的线路通常只有几条到几十条，且按编号有序，二分即可
+    private int findStopLine(int line, int stop) {
+        int i = Arrays.binarySearch(stopLines, stopLineOffsets[stop], stopLineOffsets[stop + 1], line);
+        return i >= 0 ? i : -1;
+    }
+
+    // --- 对外的只读视图（按需装箱，不额外占用内存） ---
+
+    /** 线路经过的站点ID序列 */
+    public List<Integer> stationIdsOfLine(int line) {
+        return new LineStopsView(line);
+    }
+
+    /** 经过该站点的线路ID集合 */
+    public Set<Integer> lineIdsOfStop(int stop) {
+        return new StopLinesView(stop);
+    }
+
+    private final class LineStopsView extends AbstractList<Integer> implements RandomAccess {
+        private final int line;
+
+        LineStopsView(int line) { this.line = line; }
+
+        @Override
+        public Integer get(int index) {
+            Objects.checkIndex(index, size());
+            return stationIds[lineStops[lineStopOffsets[line] + index]];
+        }
+
+        @Override
+        public int size() { return lineLength(line); }
+    }
+
+    private final class StopLinesView extends AbstractSet<Integer> {
+        private final int stop;
+
+        StopLinesView(int stop) { this.stop = stop; }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Integer)) return false;
+            int line = lineIndexOf((Integer) o);
+            return line >= 0 && findStopLine(line, stop) >= 0;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<>() {
+                private int i = stopLineOffsets[stop];
+
+                @Override
+                public boolean hasNext() { return i < stopLineOffsets[stop + 1]; }
+
+                @Override
+                public Integer next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return lineIds[stopLines[i++]];
+                }
+            };
+        }
+
+        @Override
+        public int size() { return stopLineOffsets[stop + 1] - stopLineOffsets[stop]; }
+    }
+}
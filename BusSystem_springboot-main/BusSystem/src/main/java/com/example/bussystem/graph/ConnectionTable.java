@@ -0,0 +1,152 @@
+package com.example.bussystem.graph;
+
+import java.util.Arrays;
+
+/**
+ * 基本连接表（CSA 引擎使用，随快照按需构建，只读）
+ * 把时刻表中每个班次相邻两站之间的一段行驶展开为一条“连接”，全部连接按出发时刻排成一个数组，
+ * 查询时从出发时刻开始顺序扫描，访问模式对缓存非常友好。
+ *
+ * 班次（trip）编号：同一线路、同一方向上按发车先后连续编号；
+ * 线路可双向乘坐，方向 0 从第一个站点发车，方向 1 从最后一个站点发车。
+ * 行驶跨过零点的班次再以“前一天开出”的身份复制一份（时刻减去一天，编号排在该方向末尾），
+ * 与 Timetable.nextDeparture 的口径一致，凌晨出发的查询也能乘上这些班次。
+ */
+public final class ConnectionTable {
+
+    // 连接 i：在 depTime[i] 从 depStop[i] 出发，在 arrTime[i] 到达 arrStop[i]，属于班次 trip[i]，
+    // arrStep[i] 为到达站在本方向上距始发站的站数
+    private final int[] depStop;
+    private final int[] arrStop;
+    private final int[] depTime;
+    private final int[] arrTime;
+    private final int[] trip;
+    private final int[] arrStep;
+    // 班次 -> 线路（稠密编号） / 方向
+    private final int[] tripLine;
+    private final byte[] tripDir;
+
+    private ConnectionTable(int[] depStop, int[] arrStop, int[] depTime, int[] arrTime, int[] trip, int[] arrStep,
+                            int[] tripLine, byte[] tripDir) {
+        this.depStop = depStop;
+        this.arrStop = arrStop;
+        this.depTime = depTime;
+        this.arrTime = arrTime;
+        this.trip = trip;
+        this.arrStep = arrStep;
+        this.tripLine = tripLine;
+        this.tripDir = tripDir;
+    }
+
+    static ConnectionTable build(CompactGraph g, Timetable timetable) {
+        int lineCount = g.lineCount();
+
+        // 1. 统计班次数与连接数
+        int tripCount = 0;
+        long connectionCount = 0;
+        for (int l = 0; l < lineCount; l++) {
+            int hops = Math.max(0, g.lineLength(l) - 1);
+            int trips = timetable.tripCount(l) + overnightTrips(g, timetable, l);
+            tripCount += 2 * trips;
+            connectionCount += 2L * trips * hops;
+        }
+        // 超过数组容量时直接报错，不截断成错误的长度
+        int n = Math.toIntExact(connectionCount);
+
+        // 2. 按班次、站序依次生成（同一班次内出发时刻严格递增）
+        int[] tripLine = new int[tripCount];
+        byte[] tripDir = new byte[tripCount];
+        int[] rawDepStop = new int[n];
+        int[] rawArrStop = new int[n];
+        int[] rawDepTime = new int[n];
+        int[] rawTrip = new int[n];
+        int[] rawArrStep = new int[n];
+        int t = 0;
+        int c = 0;
+        for (int l = 0; l < lineCount; l++) {
+            int len = g.lineLength(l);
+            int interval = g.interval(l);
+            int trips = timetable.tripCount(l);
+            int overnight = overnightTrips(g, timetable, l);
+            for (int dir = 0; dir < 2; dir++) {
+                for (int k = 0; k < trips + overnight; k++) {
+                    // 前 trips 个为当天的班次，其后是最后 overnight 个班次提前一天的副本
+                    int departure = k < trips
+                            ? timetable.departure(l, k)
+                            : timetable.departure(l, k - overnight) - Timetable.MINUTES_PER_DAY;
+                    tripLine[t] = l;
+                    tripDir[t] = (byte) dir;
+                    for (int step = 0; step + 1 < len; step++) {
+                        int from = dir == 0 ? step : len - 1 - step;
+                        int to = dir == 0 ? step + 1 : len - 2 - step;
+                        rawDepStop[c] = g.stopAt(l, from);
+                        rawArrStop[c] = g.stopAt(l, to);
+                        rawDepTime[c] = departure + step * interval;
+                        rawTrip[c] = t;
+                        rawArrStep[c] = step + 1;
+                        c++;
+                    }
+                    t++;
+                }
+            }
+        }
+
+        // 3. 按 (出发时刻, 生成顺序) 排序；把两者打包成 long 排序，避免装箱
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) rawDepTime[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] depStop = new int[n];
+        int[] arrStop = new int[n];
+        int[] depTime = new int[n];
+        int[] arrTime = new int[n];
+        int[] trip = new int[n];
+        int[] arrStep = new int[n];
+        for (int i = 0; i < n; i++) {
+            int src = (int) keys[i];
+            depStop[i] = rawDepStop[src];
+            arrStop[i] = rawArrStop[src];
+            depTime[i] = rawDepTime[src];
+            arrTime[i] = rawDepTime[src] + g.interval(tripLine[rawTrip[src]]);
+            trip[i] = rawTrip[src];
+            arrStep[i] = rawArrStep[src];
+        }
+        return new ConnectionTable(depStop, arrStop, depTime, arrTime, trip, arrStep, tripLine, tripDir);
+    }
+
+    // 线路末尾若干班次在最后一段出发前已过零点（班次按发车时刻升序，只需从后往前数）
+    private static int overnightTrips(CompactGraph g, Timetable timetable, int l) {
+        if (g.lineLength(l) < 2) return 0;
+        int lastHop = (g.lineLength(l) - 2) * g.interval(l);
+        int count = 0;
+        for (int k = timetable.tripCount(l) - 1; k >= 0; k--) {
+            if (timetable.departure(l, k) + lastHop < Timetable.MINUTES_PER_DAY) break;
+            count++;
+        }
+        return count;
+    }
+
+    public int size() { return depTime.length; }
+    public int tripCount() { return tripLine.length; }
+
+    /** 第一条出发时刻不早于 time 的连接下标，没有则返回 size() */
+    public int firstDepartingAt(int time) {
+        int lo = 0, hi = depTime.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (depTime[mid] < time) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    public int depStop(int c) { return depStop[c]; }
+    public int arrStop(int c) { return arrStop[c]; }
+    public int depTime(int c) { return depTime[c]; }
+    public int arrTime(int c) { return arrTime[c]; }
+    public int trip(int c) { return trip[c]; }
+    public int arrStep(int c) { return arrStep[c]; }
+    public int tripLine(int t) { return tripLine[t]; }
+    public int tripDir(int t) { return tripDir[t]; }
+}
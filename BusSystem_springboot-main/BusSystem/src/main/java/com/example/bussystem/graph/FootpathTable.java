@@ -0,0 +1,125 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.graph.StationSpatialIndex.Neighbor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 步行换乘表（随快照一起构建，只读）
+ * 对每个站点预先记录一定距离内可步行到达的其他站点及步行耗时，
+ * 隔着马路的两个站点因此也能换乘，查询时只需按下标访问，不再临时计算距离。
+ *
+ * 结构：站点 s 的步行边为 [offsets[s], offsets[s+1])，按距离升序
+ */
+public final class FootpathTable {
+
+    // 默认的步行换乘距离(米)
+    public static final int DEFAULT_RADIUS = 200;
+
+    private final int radius;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] minutes;
+    private final int[] meters;
+
+    private FootpathTable(int radius, int[] offsets, int[] targets, int[] minutes, int[] meters) {
+        this.radius = radius;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.minutes = minutes;
+        this.meters = meters;
+    }
+
+    static FootpathTable build(CompactGraph g, StationSpatialIndex spatial, int radius) {
+        return patch(null, null, g, spatial, radius, Collections.emptySet());
+    }
+
+    /**
+     * 增量更新：新站点和 affectedStationIds 中的站点重新查询附近站点，其余站点的步行边从 old 复制
+     * （目标站点换算到新图的编号，已删除的目标去掉）。old 为 null 时全部重新查询
+     * 站点新增、删除或移动时，affectedStationIds 应包含该站点及其移动前后的邻居（距离是对称的）
+     */
+    static FootpathTable patch(FootpathTable old, CompactGraph oldGraph, CompactGraph g,
+                               StationSpatialIndex spatial, int radius, Set<Integer> affectedStationIds) {
+        int stopCount = g.stationCount();
+        int[] stopMap = old == null ? null : oldGraph.stopMapping(g);
+        int[] offsets = new int[stopCount + 1];
+        int[] targets = new int[old == null ? 16 : Math.max(16, old.targets.length)];
+        int[] minutes = new int[targets.length];
+        int[] meters = new int[targets.length];
+        int w = 0;
+        for (int s = 0; s < stopCount; s++) {
+            offsets[s] = w;
+            if (radius <= 0) continue;
+            int os = old == null ? -1 : oldGraph.stopIndexOf(g.stationId(s));
+            if (os >= 0 && !affectedStationIds.contains(g.stationId(s))) {
+                for (int i = old.offsets[os]; i < old.offsets[os + 1]; i++) {
+                    int t = stopMap[old.targets[i]];
+                    if (t < 0) continue;
+                    if (w == targets.length) {
+                        targets = Arrays.copyOf(targets, w * 2);
+                        minutes = Arrays.copyOf(minutes, w * 2);
+                        meters = Arrays.copyOf(meters, w * 2);
+                    }
+                    targets[w] = t;
+                    minutes[w] = old.minutes[i];
+                    meters[w] = old.meters[i];
+                    w++;
+                }
+                continue;
+            }
+            List<Neighbor> nearby = spatial.withinRadiusOf(g.stationId(s), radius);
+            for (Neighbor n : nearby) {
+                int t = g.stopIndexOf(n.stationId());
+                if (t < 0 || t == s) continue;
+                if (w == targets.length) {
+                    targets = Arrays.copyOf(targets, w * 2);
+                    minutes = Arrays.copyOf(minutes, w * 2);
+                    meters = Arrays.copyOf(meters, w * 2);
+                }
+                targets[w] = t;
+                minutes[w] = Math.max(1, StationSpatialIndex.walkMinutes(n.meters()));
+                meters[w] = (int) Math.round(n.meters());
+                w++;
+            }
+        }
+        offsets[stopCount] = w;
+        return new FootpathTable(radius, offsets,
+                Arrays.copyOf(targets, w), Arrays.copyOf(minutes, w), Arrays.copyOf(meters, w));
+    }
+
+    /** 站点 sid 的步行邻居（站点ID），图中没有该站点时为空 */
+    List<Integer> neighborsOf(CompactGraph g, Integer sid) {
+        int s = g.stopIndexOf(sid);
+        if (s < 0) return Collections.emptyList();
+        List<Integer> ids = new ArrayList<>(offsets[s + 1] - offsets[s]);
+        for (int i = offsets[s]; i < offsets[s + 1]; i++) ids.add(g.stationId(targets[i]));
+        return ids;
+    }
+
+    /** 构建时使用的步行距离(米)，0 表示不允许步行换乘 */
+    public int radius() { return radius; }
+
+    public int footpathsStart(int stop) { return offsets[stop]; }
+    public int footpathsEnd(int stop) { return offsets[stop + 1]; }
+    /** 步行边 i 的目标站点（稠密编号） */
+    public int target(int i) { return targets[i]; }
+    /** 步行边 i 的耗时(分钟) */
+    public int minutes(int i) { return minutes[i]; }
+    /** 步行边 i 的距离(米) */
+    public int meters(int i) { return meters[i]; }
+
+    /** 查找 from -> to 的步行边，不存在返回 -1 */
+    public int find(int from, int to) {
+        for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+            if (targets[i] == to) return i;
+        }
+        return -1;
+    }
+
+    public int count() { return targets.length; }
+}
@@ -0,0 +1,335 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+
+import java.util.*;
+
+/**
+ * 路网快照（不可变）
+ * 在后台线程中完整构建，构建完成后由 PathFindingService 通过一次原子引用替换整体发布。
+ * 查询线程在一次请求内只持有同一个快照，不会读到重建过程中的半成品数据。
+ */
+public final class NetworkSnapshot {
+
+    private final Map<Integer, Station> stationMap;
+    private final Map<Integer, Road> roadMap;
+    // 线路ID -> 站点ID有序列表（CompactGraph 的只读视图）
+    private final Map<Integer, List<Integer>> lineToStationsMap;
+    // 站点ID -> 经过该站点的线路ID集合（CompactGraph 的只读视图）
+    private final Map<Integer, Set<Integer>> stationToLinesMap;
+    // 拓扑关系的实际存储：扁平化 int 数组，供搜索引擎直接使用
+    private final CompactGraph compactGraph;
+    // 线路两两之间的公共站点（换乘表）
+    private final TransferTable transferTable;
+    // 站名检索索引
+    private final StationNameIndex stationNameIndex;
+    // 输入联想用的前缀树（站名 + 拼音首字母）
+    private final StationPrefixTrie stationPrefixTrie;
+    // 按坐标查找附近站点
+    private final StationSpatialIndex stationSpatialIndex;
+    // 相邻站点之间的步行换乘
+    private final FootpathTable footpathTable;
+    // 按首末班和发车间隔展开的班次
+    private final Timetable timetable;
+    // CSA 引擎的连接表（体积较大，首次使用时才构建，之后随快照一起只读共享）
+    private volatile ConnectionTable connectionTable;
+    // 线路间最少换乘次数矩阵，发布快照后在后台构建，完成前为 null（查询不剪枝）
+    private volatile TransferMatrix transferMatrix;
+
+    private NetworkSnapshot(Map<Integer, Station> stationMap, Map<Integer, Road> roadMap,
+                            CompactGraph compactGraph, TransferTable transferTable,
+                            StationNameIndex stationNameIndex, StationPrefixTrie stationPrefixTrie,
+                            StationSpatialIndex stationSpatialIndex, FootpathTable footpathTable,
+                            Timetable timetable, NetworkSnapshot previous) {
+        this.stationMap = Collections.unmodifiableMap(stationMap);
+        this.roadMap = Collections.unmodifiableMap(roadMap);
+        this.compactGraph = compactGraph;
+        this.transferTable = transferTable;
+        this.stationNameIndex = stationNameIndex;
+        this.stationPrefixTrie = stationPrefixTrie;
+        this.stationSpatialIndex = stationSpatialIndex;
+        this.footpathTable = footpathTable;
+        this.timetable = timetable;
+
+        // 图未变化时直接沿用上一个快照的视图
+        if (previous != null && previous.compactGraph == compactGraph) {
+            this.lineToStationsMap = previous.lineToStationsMap;
+            this.stationToLinesMap = previous.stationToLinesMap;
+            return;
+        }
+        // 对外仍以 Map 形式提供，但值只是数组切片上的视图，不再为每个站点/线路保存装箱集合
+        CompactGraph g = compactGraph;
+        Map<Integer, List<Integer>> lineViews = new HashMap<>(g.lineCount() * 2);
+        for (int l = 0; l < g.lineCount(); l++) {
+            lineViews.put(g.lineId(l), g.stationIdsOfLine(l));
+        }
+        Map<Integer, Set<Integer>> stopViews = new HashMap<>(g.stationCount() * 2);
+        for (int s = 0; s < g.stationCount(); s++) {
+            if (g.stopLinesEnd(s) > g.stopLinesStart(s)) {
+                stopViews.put(g.stationId(s), g.lineIdsOfStop(s));
+            }
+        }
+        this.lineToStationsMap = Collections.unmodifiableMap(lineViews);
+        this.stationToLinesMap = Collections.unmodifiableMap(stopViews);
+    }
+
+    // 全量构建所有派生结构
+    private static NetworkSnapshot create(Map<Integer, Station> stationMap, Map<Integer, Road> roadMap,
+                                          Map<Integer, List<Integer>> sequences, int footpathRadius) {
+        CompactGraph g = CompactGraph.build(stationMap.keySet(), roadMap, sequences);
+        StationSpatialIndex spatial = StationSpatialIndex.build(stationMap.values());
+        return new NetworkSnapshot(stationMap, roadMap, g, TransferTable.build(g),
+                StationNameIndex.build(stationMap.values()), StationPrefixTrie.build(stationMap.values()),
+                spatial, FootpathTable.build(g, spatial, footpathRadius), Timetable.build(g, roadMap), null);
+    }
+
+    /**
+     * 空快照，应用启动加载完成前使用
+     */
+    public static NetworkSnapshot empty() {
+        return create(new HashMap<>(), new HashMap<>(), new HashMap<>(), FootpathTable.DEFAULT_RADIUS);
+    }
+
+    /**
+     * 由数据库中的原始记录构建快照，步行换乘距离取默认值
+     */
+    public static NetworkSnapshot build(List<Station> stations, List<Road> roads, List<LineStation> relations) {
+        return build(stations, roads, relations, FootpathTable.DEFAULT_RADIUS);
+    }
+
+    /**
+     * 由数据库中的原始记录构建快照
+     * @param footpathRadius 步行换乘距离(米)，0 表示只允许同站换乘
+     */
+    public static NetworkSnapshot build(List<Station> stations, List<Road> roads, List<LineStation> relations,
+                                        int footpathRadius) {
+        Map<Integer, Station> stationMap = new HashMap<>();
+        Map<Integer, Road> roadMap = new HashMap<>();
+        Map<Integer, List<Integer>> sequences = new HashMap<>();
+
+        // 1. 站点
+        for (Station s : stations) {
+            stationMap.put(s.getStationId(), s);
+        }
+
+        // 2. 线路基础信息
+        for (Road r : roads) {
+            roadMap.put(r.getLineOrder(), r);
+            sequences.put(r.getLineOrder(), new ArrayList<>());
+        }
+
+        // 3. 线路-站点关系 (按顺序)，找不到线路主体的关联记录直接忽略
+        List<LineStation> sorted = new ArrayList<>(relations);
+        sorted.sort(Comparator.comparingInt(LineStation::getLineOrder)
+                .thenComparingInt(LineStation::getSequenceNo));
+
+        for (LineStation ls : sorted) {
+            List<Integer> seq = sequences.get(ls.getLineOrder());
+            if (seq != null) {
+                seq.add(ls.getStationId());
+            }
+        }
+
+        NetworkSnapshot snapshot = create(stationMap, roadMap, sequences, footpathRadius);
+
+        // 4. 把站点序列回填到线路上（供 /api/routes 直接返回），此时线路实体尚未被其他快照共享
+        for (Road r : roads) {
+            r.setStationIds(snapshot.lineToStationsMap.get(r.getLineOrder()));
+        }
+        return snapshot;
+    }
+
+    // ==========================================
+    //     增量更新：基于当前快照派生新快照
+    // 只重建或修补受变更影响的结构，其余结构（连同最少换乘矩阵、连接表）与旧快照共享：
+    //   站点改名          只重建站名索引和前缀树
+    //   站点移动/新增/删除 另外重建空间索引，修补该站及其邻居的步行边；线路集合与发车信息不变，时刻表原样复用
+    //   线路变更          重建扁平数组，修补换乘表、时刻表中涉及该线路的部分
+    // ==========================================
+
+    /**
+     * 新增或更新站点（改名、坐标变化），拓扑关系不变
+     */
+    public NetworkSnapshot withStation(Station station) {
+        Integer sid = station.getStationId();
+        Station old = stationMap.get(sid);
+        Map<Integer, Station> stations = new HashMap<>(stationMap);
+        stations.put(sid, station);
+
+        boolean renamed = old == null || !Objects.equals(old.getStationName(), station.getStationName());
+        boolean moved = old == null
+                ? station.getLatitude() != null && station.getLongitude() != null
+                : !Objects.equals(old.getLatitude(), station.getLatitude())
+                  || !Objects.equals(old.getLongitude(), station.getLongitude());
+        // 新站点没有线路，只需在图中补一个站点编号
+        CompactGraph g = compactGraph.stopIndexOf(sid) >= 0
+                ? compactGraph
+                : CompactGraph.build(stations.keySet(), roadMap, lineToStationsMap);
+
+        StationSpatialIndex spatial = moved ? StationSpatialIndex.build(stations.values()) : stationSpatialIndex;
+        FootpathTable footpaths = footpathTable;
+        if (moved || g != compactGraph) {
+            footpaths = FootpathTable.patch(footpathTable, compactGraph, g, spatial, footpathTable.radius(),
+                    movedNeighborhood(sid, g, spatial));
+        }
+        NetworkSnapshot next = new NetworkSnapshot(stations, roadMap, g,
+                g == compactGraph ? transferTable : TransferTable.patch(transferTable, compactGraph, g, Set.of()),
+                renamed ? StationNameIndex.build(stations.values()) : stationNameIndex,
+                renamed ? StationPrefixTrie.build(stations.values()) : stationPrefixTrie,
+                spatial, footpaths, timetable, this);
+        if (g == compactGraph) next.connectionTable = connectionTable;
+        // 线路未变，且变化的步行边都连着一个没有线路的站点时，线路间的换乘关系不变
+        if (footpaths == footpathTable || !stationToLinesMap.containsKey(sid)) {
+            next.transferMatrix = transferMatrix;
+        }
+        return next;
+    }
+
+    /**
+     * 删除站点，并从所有经过它的线路序列中摘除
+     */
+    public NetworkSnapshot withoutStation(Integer sid) {
+        Map<Integer, Station> stations = new HashMap<>(stationMap);
+        Station removed = stations.remove(sid);
+        Map<Integer, Road> roads = new HashMap<>(roadMap);
+        Map<Integer, List<Integer>> sequences = new HashMap<>(lineToStationsMap);
+
+        Set<Integer> changedLines = stationToLinesMap.getOrDefault(sid, Collections.emptySet());
+        for (Integer lid : changedLines) {
+            List<Integer> newSeq = new ArrayList<>(sequences.get(lid));
+            newSeq.removeIf(sid::equals);
+            List<Integer> frozen = Collections.unmodifiableList(newSeq);
+            sequences.put(lid, frozen);
+            roads.put(lid, copyRoad(roads.get(lid), frozen));
+        }
+
+        CompactGraph g = CompactGraph.build(stations.keySet(), roads, sequences);
+        StationSpatialIndex spatial = stationSpatialIndex.contains(sid)
+                ? StationSpatialIndex.build(stations.values()) : stationSpatialIndex;
+        Set<Integer> affected = new HashSet<>(footpathTable.neighborsOf(compactGraph, sid));
+        NetworkSnapshot next = new NetworkSnapshot(stations, roads, g,
+                TransferTable.patch(transferTable, compactGraph, g, changedLines),
+                removed != null ? StationNameIndex.build(stations.values()) : stationNameIndex,
+                removed != null ? StationPrefixTrie.build(stations.values()) : stationPrefixTrie,
+                spatial, FootpathTable.patch(footpathTable, compactGraph, g, spatial, footpathTable.radius(), affected),
+                timetable, this);
+        if (changedLines.isEmpty()) next.transferMatrix = transferMatrix;
+        return next;
+    }
+
+    /**
+     * 新增线路或整体替换线路的站点序列
+     */
+    public NetworkSnapshot withLine(Road road, List<Integer> stationIds) {
+        Map<Integer, Road> roads = new HashMap<>(roadMap);
+        Map<Integer, List<Integer>> sequences = new HashMap<>(lineToStationsMap);
+
+        List<Integer> frozen = Collections.unmodifiableList(new ArrayList<>(stationIds));
+        sequences.put(road.getLineOrder(), frozen);
+        roads.put(road.getLineOrder(), copyRoad(road, frozen));
+        return withLinesChanged(roads, sequences, road.getLineOrder());
+    }
+
+    /**
+     * 删除线路
+     */
+    public NetworkSnapshot withoutLine(Integer lid) {
+        Map<Integer, Road> roads = new HashMap<>(roadMap);
+        Map<Integer, List<Integer>> sequences = new HashMap<>(lineToStationsMap);
+
+        roads.remove(lid);
+        sequences.remove(lid);
+        return withLinesChanged(roads, sequences, lid);
+    }
+
+    // 站点不变、线路 lid 变化：站点相关的索引原样复用，换乘表和时刻表只修补该线路
+    private NetworkSnapshot withLinesChanged(Map<Integer, Road> roads, Map<Integer, List<Integer>> sequences,
+                                             Integer lid) {
+        CompactGraph g = CompactGraph.rebuildLines(compactGraph, stationMap.keySet(), roads, sequences);
+        // 线路序列引用了快照外的站点时编号会变，步行边需要换算（这些站点没有坐标，没有步行边）
+        FootpathTable footpaths = g.sameStopsAs(compactGraph)
+                ? footpathTable
+                : FootpathTable.patch(footpathTable, compactGraph, g, stationSpatialIndex,
+                        footpathTable.radius(), Set.of());
+        return new NetworkSnapshot(stationMap, roads, g,
+                TransferTable.patch(transferTable, compactGraph, g, Set.of(lid)),
+                stationNameIndex, stationPrefixTrie, stationSpatialIndex, footpaths,
+                Timetable.patch(timetable, compactGraph, g, roads, Set.of(lid)),
+                this);
+    }
+
+    // 站点 sid 新增或移动后需要重新计算步行边的站点：它自己，以及移动前后的邻居
+    private Set<Integer> movedNeighborhood(Integer sid, CompactGraph g, StationSpatialIndex spatial) {
+        Set<Integer> affected = new HashSet<>(footpathTable.neighborsOf(compactGraph, sid));
+        affected.add(sid);
+        if (footpathTable.radius() > 0) {
+            for (StationSpatialIndex.Neighbor n : spatial.withinRadiusOf(sid, footpathTable.radius())) {
+                affected.add(n.stationId());
+            }
+        }
+        return affected;
+    }
+
+    // 线路实体会直接返回给前端，旧快照仍可能在使用中，因此复制一份再回填站点序列
+    private static Road copyRoad(Road src, List<Integer> stationIds) {
+        Road r = new Road();
+        r.setLineOrder(src.getLineOrder());
+        r.setLineName(src.getLineName());
+        r.setDirection(src.getDirection());
+        r.setStartTime(src.getStartTime());
+        r.setFinishTime(src.getFinishTime());
+        r.setIntervalTime(src.getIntervalTime());
+        r.setStationIds(stationIds);
+        return r;
+    }
+
+    public Map<Integer, Station> getStationMap() { return stationMap; }
+    public Map<Integer, Road> getRoadMap() { return roadMap; }
+    public Map<Integer, List<Integer>> getLineToStationsMap() { return lineToStationsMap; }
+    public Map<Integer, Set<Integer>> getStationToLinesMap() { return stationToLinesMap; }
+    public CompactGraph getCompactGraph() { return compactGraph; }
+    public TransferTable getTransferTable() { return transferTable; }
+    public StationNameIndex getStationNameIndex() { return stationNameIndex; }
+    public StationPrefixTrie getStationPrefixTrie() { return stationPrefixTrie; }
+    public StationSpatialIndex getStationSpatialIndex() { return stationSpatialIndex; }
+    public FootpathTable getFootpathTable() { return footpathTable; }
+    public Timetable getTimetable() { return timetable; }
+
+    public ConnectionTable getConnectionTable() {
+        ConnectionTable ct = connectionTable;
+        if (ct == null) {
+            synchronized (this) {
+                ct = connectionTable;
+                if (ct == null) {
+                    ct = ConnectionTable.build(compactGraph, timetable);
+                    connectionTable = ct;
+                }
+            }
+        }
+        return ct;
+    }
+
+    /**
+     * 最少换乘矩阵，尚未构建完成时返回 null
+     */
+    public TransferMatrix getTransferMatrix() { return transferMatrix; }
+
+    /**
+     * 构建最少换乘矩阵（由后台线程调用，重复调用直接返回）
+     */
+    public TransferMatrix buildTransferMatrix() {
+        TransferMatrix m = transferMatrix;
+        if (m == null) {
+            synchronized (this) {
+                m = transferMatrix;
+                if (m == null) {
+                    m = TransferMatrix.build(compactGraph, transferTable, footpathTable);
+                    transferMatrix = m;
+                }
+            }
+        }
+        return m;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.Station;
+
+import java.util.*;
+
+/**
+ * 站点名称索引（随快照一起构建，只读）
+ * 对每个站名建立单字和双字（n-gram）倒排表。查询时先取查询串中最稀有的片段对应的倒排表，
+ * 只在这一小批候选上校验，不再对全部站点逐个 contains。
+ *
+ * 结果排序：完全匹配 > 前缀匹配 > 包含匹配；同一档内站名短的在前，再按站点ID升序。
+ */
+public final class StationNameIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    // 序号 -> 站点ID / 规范化后的站名，序号按 (站名长度, 站点ID) 排列，倒排表中的序号天然有序
+    private final int[] stationIds;
+    private final String[] names;
+    // 单字、双字片段 -> 包含该片段的站点序号（升序）
+    private final Map<String, int[]> grams;
+
+    private StationNameIndex(int[] stationIds, String[] names, Map<String, int[]> grams) {
+        this.stationIds = stationIds;
+        this.names = names;
+        this.grams = grams;
+    }
+
+    static StationNameIndex build(Collection<Station> stations) {
+        List<Station> sorted = new ArrayList<>();
+        for (Station s : stations) {
+            if (s.getStationId() != null && s.getStationName() != null) sorted.add(s);
+        }
+        sorted.sort(Comparator.<Station>comparingInt(s -> s.getStationName().length())
+                .thenComparingInt(Station::getStationId));
+
+        int n = sorted.size();
+        int[] stationIds = new int[n];
+        String[] names = new String[n];
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int ord = 0; ord < n; ord++) {
+            stationIds[ord] = sorted.get(ord).getStationId();
+            names[ord] = normalize(sorted.get(ord).getStationName());
+            for (String gram : gramsOf(names[ord])) {
+                List<Integer> list = postings.computeIfAbsent(gram, k -> new ArrayList<>());
+                // 同一站名内重复的片段只记一次
+                if (list.isEmpty() || list.get(list.size() - 1) != ord) list.add(ord);
+            }
+        }
+
+        Map<String, int[]> grams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<String, List<Integer>> e : postings.entrySet()) {
+            grams.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new StationNameIndex(stationIds, names, grams);
+    }
+
+    /**
+     * 按名称搜索站点
+     * @param limit 最多返回条数
+     * @return 按匹配程度排序的站点ID
+     */
+    public List<Integer> search(String query, int limit) {
+        if (query == null || limit <= 0) return Collections.emptyList();
+        String q = normalize(query);
+        if (q.isEmpty()) return Collections.emptyList();
+
+        List<Integer> exact = new ArrayList<>();
+        List<Integer> prefix = new ArrayList<>();
+        List<Integer> contains = new ArrayList<>();
+        for (int ord : candidates(q)) {
+            String name = names[ord];
+            if (name.equals(q)) {
+                exact.add(stationIds[ord]);
+            } else if (name.startsWith(q)) {
+                prefix.add(stationIds[ord]);
+            } else if (name.contains(q)) {
+                contains.add(stationIds[ord]);
+            }
+        }
+
+        List<Integer> result = new ArrayList<>(Math.min(limit, exact.size() + prefix.size() + contains.size()));
+        for (List<Integer> tier : List.of(exact, prefix, contains)) {
+            for (Integer sid : tier) {
+                if (result.size() >= limit) return result;
+                result.add(sid);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 最佳匹配的站点ID，没有匹配返回 null
+     */
+    public Integer bestMatch(String query) {
+        List<Integer> hits = search(query, 1);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    // 取查询串所有片段中倒排表最短的一个作为候选集，候选必然包含该片段
+    private int[] candidates(String q) {
+        int[] best = null;
+        for (String gram : gramsOf(q)) {
+            int[] list = grams.get(gram);
+            if (list == null) return EMPTY;
+            if (best == null || list.length < best.length) best = list;
+        }
+        return best == null ? EMPTY : best;
+    }
+
+    // 切分出每个位置的单字片段和相邻双字片段，建索引和查询使用同一规则
+    private static List<String> gramsOf(String name) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < name.length(); i++) {
+            result.add(name.substring(i, i + 1));
+            if (i + 1 < name.length()) result.add(name.substring(i, i + 2));
+        }
+        return result;
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+}
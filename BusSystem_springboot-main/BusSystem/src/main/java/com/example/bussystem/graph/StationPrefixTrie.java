@@ -0,0 +1,148 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.Station;
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.util.*;
+
+/**
+ * 站名前缀树（随快照一起构建，只读），用于输入框联想
+ * 每个站点按“站名”和“拼音首字母”（如 火车站 -> hcz）各插入一次，
+ * 每个节点预先保存排名最靠前的若干站点，查询耗时只与输入长度和返回条数有关，与站点总数无关。
+ *
+ * 排名：站名短的在前，再按站点ID升序。
+ */
+public final class StationPrefixTrie {
+
+    // 每个节点最多保留的候选数，同时也是单次联想的返回上限
+    public static final int MAX_SUGGESTIONS = 20;
+
+    private static final HanyuPinyinOutputFormat PINYIN_FORMAT = new HanyuPinyinOutputFormat();
+
+    static {
+        PINYIN_FORMAT.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        PINYIN_FORMAT.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        // 经过此节点的站点（按排名），存的是站点ID
+        private int[] top = new int[0];
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node getOrAdd(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            newChildren[at] = new Node();
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        // 站点按排名顺序插入，同一站点的站名与首字母路径重合时只记一次
+        void offer(int sid) {
+            if (top.length >= MAX_SUGGESTIONS) return;
+            if (top.length > 0 && top[top.length - 1] == sid) return;
+            top = Arrays.copyOf(top, top.length + 1);
+            top[top.length - 1] = sid;
+        }
+    }
+
+    private final Node root;
+
+    private StationPrefixTrie(Node root) {
+        this.root = root;
+    }
+
+    static StationPrefixTrie build(Collection<Station> stations) {
+        List<Station> sorted = new ArrayList<>();
+        for (Station s : stations) {
+            if (s.getStationId() != null && s.getStationName() != null) sorted.add(s);
+        }
+        sorted.sort(Comparator.<Station>comparingInt(s -> s.getStationName().length())
+                .thenComparingInt(Station::getStationId));
+
+        Node root = new Node();
+        for (Station s : sorted) {
+            String name = normalize(s.getStationName());
+            insert(root, name, s.getStationId());
+            String initials = initialsOf(name);
+            if (!initials.equals(name)) {
+                insert(root, initials, s.getStationId());
+            }
+        }
+        return new StationPrefixTrie(root);
+    }
+
+    private static void insert(Node root, String key, int sid) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrAdd(key.charAt(i));
+            node.offer(sid);
+        }
+    }
+
+    /**
+     * 按前缀联想站点
+     * @return 排名靠前的站点ID，最多 limit 条（不超过 MAX_SUGGESTIONS）
+     */
+    public List<Integer> suggest(String prefix, int limit) {
+        if (prefix == null || limit <= 0) return Collections.emptyList();
+        String key = normalize(prefix);
+        if (key.isEmpty()) return Collections.emptyList();
+
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) return Collections.emptyList();
+
+        int n = Math.min(limit, node.top.length);
+        List<Integer> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(node.top[i]);
+        }
+        return result;
+    }
+
+    // 拼音首字母：汉字取第一个读音的首字母，其余字符原样保留
+    static String initialsOf(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            String[] pinyin = null;
+            try {
+                pinyin = PinyinHelper.toHanyuPinyinStringArray(c, PINYIN_FORMAT);
+            } catch (BadHanyuPinyinOutputFormatCombination ignored) {
+                // 输出格式为固定常量，不会出现非法组合
+            }
+            if (pinyin != null && pinyin.length > 0 && !pinyin[0].isEmpty()) {
+                sb.append(pinyin[0].charAt(0));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+}
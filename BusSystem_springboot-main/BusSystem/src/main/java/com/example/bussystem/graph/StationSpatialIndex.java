@@ -0,0 +1,274 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.Station;
+
+import java.util.*;
+
+/**
+ * 站点空间索引（随快照一起构建，只读）
+ * 把经纬度按城市中心纬度投影到平面（米），再划分为均匀网格，格子按 CSR 存放在 int 数组中。
+ * 最近邻 / 半径查询从查询点所在格子向外逐圈扩展，候选只来自附近几个格子，单次查询在微秒级。
+ *
+ * 没有坐标的站点不进入索引。城市尺度下平面近似的误差远小于步行距离本身的误差。
+ */
+public final class StationSpatialIndex {
+
+    // 每度纬度对应的距离(米)
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    // 格子边长下限(米)
+    private static final double MIN_CELL_SIZE = 200.0;
+    // 步行速度(米/分钟)，约 4.8 km/h
+    public static final double WALK_METERS_PER_MINUTE = 80.0;
+
+    /** 查询结果：站点ID 与直线距离(米) */
+    public record Neighbor(int stationId, double meters) {}
+
+    // 序号 -> 站点ID / 投影坐标，序号按所在格子分组
+    private final int[] stationIds;
+    private final double[] xs;
+    private final double[] ys;
+    // 站点ID -> 序号
+    private final Map<Integer, Integer> ordinalOf;
+
+    // 投影参数
+    private final double originLat;
+    private final double originLng;
+    private final double cosLat;
+
+    // 网格：格子 (cx, cy) 中的站点为序号 [cellOffsets[c], cellOffsets[c+1])，c = cy * cols + cx
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final int[] cellOffsets;
+
+    private StationSpatialIndex(int[] stationIds, double[] xs, double[] ys, Map<Integer, Integer> ordinalOf,
+                                double originLat, double originLng, double cosLat,
+                                double cellSize, int cols, int rows, int[] cellOffsets) {
+        this.stationIds = stationIds;
+        this.xs = xs;
+        this.ys = ys;
+        this.ordinalOf = ordinalOf;
+        this.originLat = originLat;
+        this.originLng = originLng;
+        this.cosLat = cosLat;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.cellOffsets = cellOffsets;
+    }
+
+    static StationSpatialIndex build(Collection<Station> stations) {
+        List<Station> located = new ArrayList<>();
+        for (Station s : stations) {
+            if (s.getStationId() != null && s.getLatitude() != null && s.getLongitude() != null) located.add(s);
+        }
+        // 按 ID 排序，保证同一份数据每次构建结果一致
+        located.sort(Comparator.comparingInt(Station::getStationId));
+        int n = located.size();
+        if (n == 0) {
+            return new StationSpatialIndex(new int[0], new double[0], new double[0], Collections.emptyMap(),
+                    0, 0, 1, MIN_CELL_SIZE, 0, 0, new int[1]);
+        }
+
+        // 1. 以包围盒左下角为原点投影到平面
+        double minLat = Double.MAX_VALUE, minLng = Double.MAX_VALUE, sumLat = 0;
+        for (Station s : located) {
+            minLat = Math.min(minLat, s.getLatitude());
+            minLng = Math.min(minLng, s.getLongitude());
+            sumLat += s.getLatitude();
+        }
+        double cosLat = Math.cos(Math.toRadians(sumLat / n));
+        double[] px = new double[n];
+        double[] py = new double[n];
+        double width = 0, height = 0;
+        for (int i = 0; i < n; i++) {
+            px[i] = (located.get(i).getLongitude() - minLng) * METERS_PER_DEGREE * cosLat;
+            py[i] = (located.get(i).getLatitude() - minLat) * METERS_PER_DEGREE;
+            width = Math.max(width, px[i]);
+            height = Math.max(height, py[i]);
+        }
+
+        // 2. 格子边长：平均每格约一个站点，并限制格子总数与站点数同一量级
+        double cellSize = Math.max(MIN_CELL_SIZE, Math.sqrt(width * height / n));
+        cellSize = Math.max(cellSize, Math.max(width, height) / (4.0 * n));
+        int cols = (int) (width / cellSize) + 1;
+        int rows = (int) (height / cellSize) + 1;
+
+        // 3. 计数排序写入 CSR
+        int[] cellOf = new int[n];
+        int[] cellOffsets = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = (int) (py[i] / cellSize) * cols + (int) (px[i] / cellSize);
+            cellOffsets[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellOffsets[c + 1] += cellOffsets[c];
+        }
+        int[] cursor = Arrays.copyOf(cellOffsets, cols * rows);
+        int[] stationIds = new int[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        Map<Integer, Integer> ordinalOf = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            int ord = cursor[cellOf[i]]++;
+            stationIds[ord] = located.get(i).getStationId();
+            xs[ord] = px[i];
+            ys[ord] = py[i];
+            ordinalOf.put(stationIds[ord], ord);
+        }
+        return new StationSpatialIndex(stationIds, xs, ys, ordinalOf,
+                minLat, minLng, cosLat, cellSize, cols, rows, cellOffsets);
+    }
+
+    /** 已建立索引（有坐标）的站点数 */
+    public int size() { return stationIds.length; }
+
+    /** 站点是否有坐标 */
+    public boolean contains(Integer sid) { return ordinalOf.containsKey(sid); }
+
+    /** 经纬度是否为合法取值：纬度 [-90, 90]，经度 [-180, 180]，NaN 不合法 */
+    public static boolean isValidCoordinate(double lat, double lng) {
+        return lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180;
+    }
+
+    /**
+     * 距离给定坐标最近的 k 个站点，按距离升序
+     */
+    public List<Neighbor> nearest(double lat, double lng, int k) {
+        if (k <= 0 || stationIds.length == 0 || !isValidCoordinate(lat, lng)) return Collections.emptyList();
+        double x = toX(lng);
+        double y = toY(lat);
+        int cx = (int) Math.floor(x / cellSize);
+        int cy = (int) Math.floor(y / cellSize);
+
+        // 候选按距离升序保存在定长数组中，k 通常很小，插入排序即可
+        int[] bestOrd = new int[k];
+        double[] bestDist = new double[k];
+        int found = 0;
+
+        int firstRing = ringToGrid(cx, cy);
+        int lastRing = lastRing(cx, cy);
+        for (int r = firstRing; r <= lastRing; r++) {
+            int[] cells = ringCells(cx, cy, r);
+            for (int c : cells) {
+                for (int ord = cellOffsets[c]; ord < cellOffsets[c + 1]; ord++) {
+                    double d = Math.hypot(xs[ord] - x, ys[ord] - y);
+                    if (found == k && d >= bestDist[k - 1]) continue;
+                    int i = found < k ? found++ : k - 1;
+                    while (i > 0 && bestDist[i - 1] > d) {
+                        bestDist[i] = bestDist[i - 1];
+                        bestOrd[i] = bestOrd[i - 1];
+                        i--;
+                    }
+                    bestDist[i] = d;
+                    bestOrd[i] = ord;
+                }
+            }
+            // 第 r 圈以外的站点距离至少为 r * cellSize
+            if (found == k && bestDist[k - 1] <= r * cellSize) break;
+        }
+
+        List<Neighbor> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(new Neighbor(stationIds[bestOrd[i]], bestDist[i]));
+        }
+        return result;
+    }
+
+    /**
+     * 给定坐标 radius 米范围内的全部站点，按距离升序
+     */
+    public List<Neighbor> withinRadius(double lat, double lng, double radius) {
+        if (!isValidCoordinate(lat, lng)) return Collections.emptyList();
+        return withinRadius(toX(lng), toY(lat), radius, -1);
+    }
+
+    /**
+     * 某站点 radius 米范围内的其他站点，按距离升序；站点没有坐标时返回空
+     */
+    public List<Neighbor> withinRadiusOf(Integer sid, double radius) {
+        Integer ord = ordinalOf.get(sid);
+        if (ord == null) return Collections.emptyList();
+        return withinRadius(xs[ord], ys[ord], radius, ord);
+    }
+
+    private List<Neighbor> withinRadius(double x, double y, double radius, int excludeOrd) {
+        if (radius < 0 || stationIds.length == 0) return Collections.emptyList();
+        int cx = (int) Math.floor(x / cellSize);
+        int cy = (int) Math.floor(y / cellSize);
+
+        List<Neighbor> result = new ArrayList<>();
+        int firstRing = ringToGrid(cx, cy);
+        int lastRing = Math.min(lastRing(cx, cy), (int) Math.ceil(radius / cellSize) + 1);
+        for (int r = firstRing; r <= lastRing; r++) {
+            for (int c : ringCells(cx, cy, r)) {
+                for (int ord = cellOffsets[c]; ord < cellOffsets[c + 1]; ord++) {
+                    if (ord == excludeOrd) continue;
+                    double d = Math.hypot(xs[ord] - x, ys[ord] - y);
+                    if (d <= radius) result.add(new Neighbor(stationIds[ord], d));
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::meters).thenComparingInt(Neighbor::stationId));
+        return result;
+    }
+
+    /**
+     * 两个站点之间的直线距离(米)，任一站点没有坐标时返回 -1
+     */
+    public double distance(Integer sidA, Integer sidB) {
+        Integer a = ordinalOf.get(sidA);
+        Integer b = ordinalOf.get(sidB);
+        if (a == null || b == null) return -1;
+        return Math.hypot(xs[a] - xs[b], ys[a] - ys[b]);
+    }
+
+    /**
+     * 步行耗时(分钟)，不足一分钟按一分钟计
+     */
+    public static int walkMinutes(double meters) {
+        return (int) Math.ceil(meters / WALK_METERS_PER_MINUTE);
+    }
+
+    // --- 网格遍历 ---
+
+    private double toX(double lng) { return (lng - originLng) * METERS_PER_DEGREE * cosLat; }
+    private double toY(double lat) { return (lat - originLat) * METERS_PER_DEGREE; }
+
+    // 查询点在网格外时，前面若干圈不含任何格子，直接从第一个与网格相交的圈开始
+    private int ringToGrid(int cx, int cy) {
+        int dx = cx < 0 ? -cx : Math.max(0, cx - (cols - 1));
+        int dy = cy < 0 ? -cy : Math.max(0, cy - (rows - 1));
+        return Math.max(dx, dy);
+    }
+
+    // 覆盖整个网格所需的圈数
+    private int lastRing(int cx, int cy) {
+        return Math.max(Math.max(Math.abs(cx), Math.abs(cols - 1 - cx)),
+                Math.max(Math.abs(cy), Math.abs(rows - 1 - cy)));
+    }
+
+    // 与 (cx, cy) 切比雪夫距离恰为 r 且落在网格内的格子编号
+    // 只遍历圈与网格相交的部分：查询点远在网格外时圈很大，但每圈的工作量不超过网格的行列数
+    private int[] ringCells(int cx, int cy, int r) {
+        int yFrom = Math.max(0, cy - r);
+        int yTo = Math.min(rows - 1, cy + r);
+        int xFrom = Math.max(0, cx - r);
+        int xTo = Math.min(cols - 1, cx + r);
+        if (yFrom > yTo || xFrom > xTo) return new int[0];
+
+        int[] buf = new int[2 * (xTo - xFrom + 1) + 2 * (yTo - yFrom + 1)];
+        int n = 0;
+        for (int y = yFrom; y <= yTo; y++) {
+            if (y == cy - r || y == cy + r) {
+                // 上下两条边整行
+                for (int x = xFrom; x <= xTo; x++) buf[n++] = y * cols + x;
+            } else {
+                // 中间各行只有左右两端
+                if (cx - r >= 0) buf[n++] = y * cols + cx - r;
+                if (r > 0 && cx + r < cols) buf[n++] = y * cols + cx + r;
+            }
+        }
+        return n == buf.length ? buf : Arrays.copyOf(buf, n);
+    }
+}
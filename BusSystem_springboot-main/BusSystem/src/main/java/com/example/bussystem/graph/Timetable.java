@@ -0,0 +1,127 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.Road;
+
+import java.sql.Time;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 发车时刻表（随快照一起构建，只读）
+ * 按线路的首班(St)、末班(Ft)和发车间隔(Interval_time)把班次展开为从始发站出发的时刻数组，
+ * 查询时用二分找到“最早能赶上的一班车”，不在每次请求中重复展开。
+ *
+ * 时间均以当天 0 点起的分钟数表示；末班早于首班时视为跨过零点，时刻可能大于 1440。
+ * 跨零点的班次在次日凌晨仍在运行，查询时把前一天开出的这部分班次换算到当天一起比较。
+ * 线路可双向乘坐（与 createRoute 的口径一致），两个方向按同一时刻表从各自的始发站发车。
+ * 站间行驶时间沿用 CompactGraph.interval 的估算。
+ */
+public final class Timetable {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    // 换乘时至少预留的时间(分钟)
+    public static final int MIN_TRANSFER_MINUTES = 1;
+    // nextDeparture 没有可乘班次时的返回值；前一天开出的班次换算到当天可能是负数，不能用 -1 表示
+    public static final int NO_DEPARTURE = Integer.MIN_VALUE;
+
+    // 线路 l 的班次：departures[tripOffsets[l] .. tripOffsets[l+1])，升序
+    private final int[] tripOffsets;
+    private final int[] departures;
+
+    private Timetable(int[] tripOffsets, int[] departures) {
+        this.tripOffsets = tripOffsets;
+        this.departures = departures;
+    }
+
+    static Timetable build(CompactGraph g, Map<Integer, Road> roadMap) {
+        return patch(null, null, g, roadMap, Collections.emptySet());
+    }
+
+    /**
+     * 增量更新：changedLineIds 中的线路按新的线路信息重新展开，其余线路的班次从 old 原样复制
+     * old 为 null 时全部重新展开
+     */
+    static Timetable patch(Timetable old, CompactGraph oldGraph, CompactGraph g, Map<Integer, Road> roadMap,
+                           Set<Integer> changedLineIds) {
+        int lineCount = g.lineCount();
+        int[] tripOffsets = new int[lineCount + 1];
+        // 沿用旧班次的线路在 old 中的编号，-1 表示需要重新展开
+        int[] source = new int[lineCount];
+        int[] firstTrip = new int[lineCount];
+        int[] headway = new int[lineCount];
+        for (int l = 0; l < lineCount; l++) {
+            int lid = g.lineId(l);
+            source[l] = old == null || changedLineIds.contains(lid) ? -1 : oldGraph.lineIndexOf(lid);
+            if (source[l] >= 0) {
+                tripOffsets[l + 1] = tripOffsets[l] + old.tripCount(source[l]);
+                continue;
+            }
+            Road road = roadMap.get(lid);
+            int first = road == null ? -1 : toMinutes(road.getStartTime());
+            int last = road == null ? -1 : toMinutes(road.getFinishTime());
+            // 未填写首末班时间的线路按全天运营处理
+            if (first < 0) first = 0;
+            if (last < 0) last = MINUTES_PER_DAY - 1;
+            if (last < first) last += MINUTES_PER_DAY;
+
+            firstTrip[l] = first;
+            headway[l] = g.interval(l);
+            tripOffsets[l + 1] = tripOffsets[l] + (last - first) / headway[l] + 1;
+        }
+
+        int[] departures = new int[tripOffsets[lineCount]];
+        for (int l = 0; l < lineCount; l++) {
+            if (source[l] >= 0) {
+                System.arraycopy(old.departures, old.tripOffsets[source[l]], departures, tripOffsets[l],
+                        tripOffsets[l + 1] - tripOffsets[l]);
+                continue;
+            }
+            for (int i = tripOffsets[l], t = firstTrip[l]; i < tripOffsets[l + 1]; i++, t += headway[l]) {
+                departures[i] = t;
+            }
+        }
+        return new Timetable(tripOffsets, departures);
+    }
+
+    /**
+     * 不早于 earliest 从始发站发出的第一班车的发车时刻，已过末班返回 NO_DEPARTURE
+     * 除当天的班次外，还考虑前一天开出、跨过零点仍在运行的班次（返回值减去一天，可能为负）：
+     * 22:00-02:00 运营的线路，00:30 查询能赶上前一天 00:30 之后发出的那一班，而不是等到当晚 22:00
+     */
+    public int nextDeparture(int line, int earliest) {
+        // 运营时长不足一天，前一天的班次换算后一定早于当天首班，赶得上就优先乘坐
+        int yesterday = firstAtOrAfter(line, earliest + MINUTES_PER_DAY);
+        if (yesterday != NO_DEPARTURE) return yesterday - MINUTES_PER_DAY;
+        return firstAtOrAfter(line, earliest);
+    }
+
+    private int firstAtOrAfter(int line, int time) {
+        int from = tripOffsets[line];
+        int to = tripOffsets[line + 1];
+        int i = Arrays.binarySearch(departures, from, to, time);
+        if (i < 0) i = -i - 1;
+        return i < to ? departures[i] : NO_DEPARTURE;
+    }
+
+    public int tripCount(int line) { return tripOffsets[line + 1] - tripOffsets[line]; }
+
+    /** 线路第 k 班车（从 0 开始）在始发站的发车时刻 */
+    public int departure(int line, int k) { return departures[tripOffsets[line] + k]; }
+
+    public int totalTrips() { return departures.length; }
+
+    /**
+     * 分钟数格式化为 HH:mm，跨过零点的时刻按次日显示
+     */
+    public static String format(int minutes) {
+        int m = Math.floorMod(minutes, MINUTES_PER_DAY);
+        return String.format("%02d:%02d", m / 60, m % 60);
+    }
+
+    private static int toMinutes(Time time) {
+        if (time == null) return -1;
+        return time.toLocalTime().getHour() * 60 + time.toLocalTime().getMinute();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bussystem.graph;
+
+import java.util.Arrays;
+
+/**
+ * 线路两两之间的最少换乘次数（随快照在后台构建，只读）
+ * 以 L×L 的 byte 矩阵存放，L 为线路数；两条线路有公共站点，或者站点之间可以步行换乘，即视为相邻。
+ *
+ * 矩阵只考虑拓扑，不考虑行驶方向、时刻表和“多此一举”等规则，因此是实际换乘次数的下界：
+ * 用它拒绝查询或剪枝不会漏掉任何方案。
+ */
+public final class TransferMatrix {
+
+    // 不可达（超过 byte 能表示的换乘次数也按不可达处理，实际路网远达不到）
+    public static final int UNREACHABLE = Byte.MAX_VALUE;
+
+    private final int lineCount;
+    // transfers[a * lineCount + b]：从线路 a 换乘到线路 b 的最少次数，同一线路为 0
+    private final byte[] transfers;
+
+    private TransferMatrix(int lineCount, byte[] transfers) {
+        this.lineCount = lineCount;
+        this.transfers = transfers;
+    }
+
+    static TransferMatrix build(CompactGraph g, TransferTable tt, FootpathTable footpaths) {
+        int lineCount = g.lineCount();
+
+        // 1. 线路邻接：公共站点来自换乘表，步行换乘再补充一遍
+        int[][] neighbors = new int[lineCount][];
+        boolean[] seen = new boolean[lineCount];
+        int[] buffer = new int[lineCount];
+        for (int a = 0; a < lineCount; a++) {
+            int n = 0;
+            for (int e = tt.pairsStart(a); e < tt.pairsEnd(a); e++) {
+                int b = tt.pairLine(e);
+                seen[b] = true;
+                buffer[n++] = b;
+            }
+            for (int pos = 0; pos < g.lineLength(a); pos++) {
+                int s = g.stopAt(a, pos);
+                for (int i = footpaths.footpathsStart(s); i < footpaths.footpathsEnd(s); i++) {
+                    int t = footpaths.target(i);
+                    for (int j = g.stopLinesStart(t); j < g.stopLinesEnd(t); j++) {
+                        int b = g.stopLineAt(j);
+                        if (b != a && !seen[b]) {
+                            seen[b] = true;
+                            buffer[n++] = b;
+                        }
+                    }
+                }
+            }
+            neighbors[a] = Arrays.copyOf(buffer, n);
+            for (int i = 0; i < n; i++) seen[buffer[i]] = false;
+        }
+
+        // 2. 每条线路做一次 BFS
+        byte[] transfers = new byte[lineCount * lineCount];
+        Arrays.fill(transfers, (byte) UNREACHABLE);
+        int[] queue = new int[lineCount];
+        for (int a = 0; a < lineCount; a++) {
+            int row = a * lineCount;
+            transfers[row + a] = 0;
+            int head = 0, tail = 0;
+            queue[tail++] = a;
+            while (head < tail) {
+                int x = queue[head++];
+                int next = transfers[row + x] + 1;
+                if (next >= UNREACHABLE) break;
+                for (int b : neighbors[x]) {
+                    if (transfers[row + b] == UNREACHABLE) {
+                        transfers[row + b] = (byte) next;
+                        queue[tail++] = b;
+                    }
+                }
+            }
+        }
+        return new TransferMatrix(lineCount, transfers);
+    }
+
+    /** 线路 a 到线路 b 的最少换乘次数，不可达为 UNREACHABLE */
+    public int transfers(int a, int b) {
+        return transfers[a * lineCount + b];
+    }
+
+    /**
+     * 站点 from 到站点 to 的最少换乘次数（两站经过的线路之间取最小），不可达为 UNREACHABLE
+     */
+    public int minTransfers(CompactGraph g, int from, int to) {
+        int best = UNREACHABLE;
+        for (int i = g.stopLinesStart(from); i < g.stopLinesEnd(from); i++) {
+            int row = g.stopLineAt(i) * lineCount;
+            for (int j = g.stopLinesStart(to); j < g.stopLinesEnd(to); j++) {
+                best = Math.min(best, transfers[row + g.stopLineAt(j)]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 每条线路到“经过站点 to 的某条线路”的最少换乘次数，即乘上该线路后至少还要再换乘几次才能到达 to
+     */
+    public int[] transfersToStop(CompactGraph g, int to) {
+        int[] result = new int[lineCount];
+        Arrays.fill(result, UNREACHABLE);
+        for (int j = g.stopLinesStart(to); j < g.stopLinesEnd(to); j++) {
+            int b = g.stopLineAt(j);
+            for (int a = 0; a < lineCount; a++) {
+                result[a] = Math.min(result[a], transfers[a * lineCount + b]);
+            }
+        }
+        return result;
+    }
+
+    public int lineCount() { return lineCount; }
+}
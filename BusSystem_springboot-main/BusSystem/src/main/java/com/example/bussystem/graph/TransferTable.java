@@ -0,0 +1,281 @@
+package com.example.bussystem.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 线路换乘表（随快照一起构建，只读）
+ * 对每一对有公共站点的线路 (a, b)，预先记录全部公共站点及其在两条线路上的位置，
+ * 查询时求“下一条可换乘线路”和“换乘站”只需数组下标访问，不再临时构建集合求交集。
+ *
+ * 结构：
+ *   线路 a 的可换乘线路：pairLine[pairOffsets[a] .. pairOffsets[a+1])，按线路编号升序
+ *   线路对 e 的公共站点：shared*[sharedOffsets[e] .. sharedOffsets[e+1])，按在 a 上的位置升序
+ */
+public final class TransferTable {
+
+    private final int[] pairOffsets;
+    private final int[] pairLine;
+    private final int[] sharedOffsets;
+    private final int[] sharedStop;
+    private final int[] sharedPosFrom;
+    private final int[] sharedPosTo;
+
+    private TransferTable(int[] pairOffsets, int[] pairLine, int[] sharedOffsets,
+                          int[] sharedStop, int[] sharedPosFrom, int[] sharedPosTo) {
+        this.pairOffsets = pairOffsets;
+        this.pairLine = pairLine;
+        this.sharedOffsets = sharedOffsets;
+        this.sharedStop = sharedStop;
+        this.sharedPosFrom = sharedPosFrom;
+        this.sharedPosTo = sharedPosTo;
+    }
+
+    static TransferTable build(CompactGraph g) {
+        int lineCount = g.lineCount();
+        int stopCount = g.stationCount();
+
+        // 1. 站点 -> (线路, 位置) 关联表，环线上同一站可能出现多次
+        int[] incOffsets = new int[stopCount + 1];
+        for (int l = 0; l < lineCount; l++) {
+            for (int pos = 0; pos < g.lineLength(l); pos++) {
+                incOffsets[g.stopAt(l, pos) + 1]++;
+            }
+        }
+        for (int s = 0; s < stopCount; s++) {
+            incOffsets[s + 1] += incOffsets[s];
+        }
+        int[] incLine = new int[incOffsets[stopCount]];
+        int[] incPos = new int[incOffsets[stopCount]];
+        int[] cursor = Arrays.copyOf(incOffsets, stopCount);
+        for (int l = 0; l < lineCount; l++) {
+            for (int pos = 0; pos < g.lineLength(l); pos++) {
+                int s = g.stopAt(l, pos);
+                incLine[cursor[s]] = l;
+                incPos[cursor[s]++] = pos;
+            }
+        }
+
+        // 2. 按起始线路分桶收集 (b, 站点, 在a上的位置, 在b上的位置)
+        List<List<int[]>> buckets = new ArrayList<>(lineCount);
+        for (int l = 0; l < lineCount; l++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int s = 0; s < stopCount; s++) {
+            for (int i = incOffsets[s]; i < incOffsets[s + 1]; i++) {
+                for (int j = incOffsets[s]; j < incOffsets[s + 1]; j++) {
+                    if (incLine[i] == incLine[j]) continue;
+                    buckets.get(incLine[i]).add(new int[]{incLine[j], s, incPos[i], incPos[j]});
+                }
+            }
+        }
+
+        // 3. 压平成 CSR
+        int[] pairOffsets = new int[lineCount + 1];
+        List<Integer> pairLines = new ArrayList<>();
+        List<Integer> sharedOffsetList = new ArrayList<>();
+        int total = 0;
+        for (List<int[]> b : buckets) total += b.size();
+        int[] sharedStop = new int[total];
+        int[] sharedPosFrom = new int[total];
+        int[] sharedPosTo = new int[total];
+
+        int w = 0;
+        Comparator<int[]> order = Comparator.<int[]>comparingInt(r -> r[0])
+                .thenComparingInt(r -> r[2])
+                .thenComparingInt(r -> r[3]);
+        for (int a = 0; a < lineCount; a++) {
+            List<int[]> records = buckets.get(a);
+            records.sort(order);
+            int lastB = -1;
+            for (int[] r : records) {
+                if (r[0] != lastB) {
+                    lastB = r[0];
+                    pairLines.add(lastB);
+                    sharedOffsetList.add(w);
+                }
+                sharedStop[w] = r[1];
+                sharedPosFrom[w] = r[2];
+                sharedPosTo[w] = r[3];
+                w++;
+            }
+            pairOffsets[a + 1] = pairLines.size();
+        }
+        sharedOffsetList.add(w);
+
+        return new TransferTable(pairOffsets,
+                pairLines.stream().mapToInt(Integer::intValue).toArray(),
+                sharedOffsetList.stream().mapToInt(Integer::intValue).toArray(),
+                sharedStop, sharedPosFrom, sharedPosTo);
+    }
+
+    /**
+     * 增量更新：只重新计算 changedLineIds 中的线路与其他线路的公共站点，
+     * 其余线路对从 old 复制（按线路ID、站点ID换算到新图的编号），删除的线路对一并去掉
+     *
+     * @param oldGraph       old 所基于的图
+     * @param g              新图
+     * @param changedLineIds 新增、修改或删除的线路
+     */
+    static TransferTable patch(TransferTable old, CompactGraph oldGraph, CompactGraph g, Set<Integer> changedLineIds) {
+        int lineCount = g.lineCount();
+        boolean[] changed = new boolean[lineCount];
+        for (Integer lid : changedLineIds) {
+            int l = g.lineIndexOf(lid);
+            if (l >= 0) changed[l] = true;
+        }
+        // 未变化的线路：旧编号 <-> 新编号；两侧都按线路ID升序编号，换算后顺序不变
+        int[] lineMap = new int[oldGraph.lineCount()];
+        int[] oldLineOf = new int[lineCount];
+        Arrays.fill(oldLineOf, -1);
+        for (int l = 0; l < lineMap.length; l++) {
+            int nl = g.lineIndexOf(oldGraph.lineId(l));
+            lineMap[l] = nl >= 0 && !changed[nl] ? nl : -1;
+            if (lineMap[l] >= 0) oldLineOf[lineMap[l]] = l;
+        }
+        int[] stopMap = oldGraph.stopMapping(g);
+
+        // 1. 变更线路与其经过站点上的其他线路逐站配对，两个方向都记录（b, 站点, 在a上的位置, 在b上的位置）
+        List<List<int[]>> added = new ArrayList<>(lineCount);
+        for (int l = 0; l < lineCount; l++) added.add(null);
+        int addedCount = 0;
+        for (int c = 0; c < lineCount; c++) {
+            if (!changed[c]) continue;
+            for (int pc = 0; pc < g.lineLength(c); pc++) {
+                int s = g.stopAt(c, pc);
+                for (int i = g.stopLinesStart(s); i < g.stopLinesEnd(s); i++) {
+                    int b = g.stopLineAt(i);
+                    if (b == c) continue;
+                    // 环线可能多次经过同一站，首末位置之间逐个核对
+                    int last = g.lastPositionOf(b, s);
+                    for (int pb = g.positionOf(b, s); pb <= last; pb++) {
+                        if (g.stopAt(b, pb) != s) continue;
+                        bucket(added, c).add(new int[]{b, s, pc, pb});
+                        addedCount++;
+                        // 两条线路都有变更时，反方向的记录由另一条线路自己生成
+                        if (!changed[b]) {
+                            bucket(added, b).add(new int[]{c, s, pb, pc});
+                            addedCount++;
+                        }
+                    }
+                }
+            }
+        }
+
+        // 2. 逐条线路合并：复制旧的线路对，按线路编号插入新增的线路对
+        Comparator<int[]> order = Comparator.<int[]>comparingInt(r -> r[0])
+                .thenComparingInt(r -> r[2])
+                .thenComparingInt(r -> r[3]);
+        int[] pairOffsets = new int[lineCount + 1];
+        Builder out = new Builder(old.pairCount() + addedCount, old.sharedStop.length + addedCount);
+        for (int a = 0; a < lineCount; a++) {
+            List<int[]> records = added.get(a);
+            if (records != null) records.sort(order);
+            int k = 0;
+            int oa = oldLineOf[a];
+            if (oa >= 0) {
+                for (int e = old.pairOffsets[oa]; e < old.pairOffsets[oa + 1]; e++) {
+                    int b = lineMap[old.pairLine[e]];
+                    if (b < 0) continue;
+                    k = out.copy(records, k, b);
+                    out.pair(b);
+                    for (int i = old.sharedOffsets[e]; i < old.sharedOffsets[e + 1]; i++) {
+                        out.shared(stopMap[old.sharedStop[i]], old.sharedPosFrom[i], old.sharedPosTo[i]);
+                    }
+                }
+            }
+            out.copy(records, k, Integer.MAX_VALUE);
+            pairOffsets[a + 1] = out.pairs;
+        }
+        return out.finish(pairOffsets);
+    }
+
+    private static List<int[]> bucket(List<List<int[]>> buckets, int line) {
+        List<int[]> b = buckets.get(line);
+        if (b == null) {
+            b = new ArrayList<>();
+            buckets.set(line, b);
+        }
+        return b;
+    }
+
+    // patch 的输出缓冲，容量按上限一次分配
+    private static final class Builder {
+        final int[] pairLine;
+        final int[] sharedOffsets;
+        final int[] sharedStop;
+        final int[] sharedPosFrom;
+        final int[] sharedPosTo;
+        int pairs;
+        int shared;
+
+        Builder(int maxPairs, int maxShared) {
+            pairLine = new int[maxPairs];
+            sharedOffsets = new int[maxPairs + 1];
+            sharedStop = new int[maxShared];
+            sharedPosFrom = new int[maxShared];
+            sharedPosTo = new int[maxShared];
+        }
+
+        void pair(int line) {
+            pairLine[pairs] = line;
+            sharedOffsets[pairs++] = shared;
+        }
+
+        void shared(int stop, int posFrom, int posTo) {
+            sharedStop[shared] = stop;
+            sharedPosFrom[shared] = posFrom;
+            sharedPosTo[shared++] = posTo;
+        }
+
+        // 写入 records[k..] 中目标线路编号小于 limit 的记录（已排序），返回下一条未写入的下标
+        int copy(List<int[]> records, int k, int limit) {
+            if (records == null) return k;
+            while (k < records.size() && records.get(k)[0] < limit) {
+                int b = records.get(k)[0];
+                pair(b);
+                for (; k < records.size() && records.get(k)[0] == b; k++) {
+                    int[] r = records.get(k);
+                    shared(r[1], r[2], r[3]);
+                }
+            }
+            return k;
+        }
+
+        TransferTable finish(int[] pairOffsets) {
+            sharedOffsets[pairs] = shared;
+            return new TransferTable(pairOffsets, Arrays.copyOf(pairLine, pairs),
+                    Arrays.copyOf(sharedOffsets, pairs + 1),
+                    Arrays.copyOf(sharedStop, shared), Arrays.copyOf(sharedPosFrom, shared),
+                    Arrays.copyOf(sharedPosTo, shared));
+        }
+    }
+
+    // --- 可换乘线路 ---
+
+    public int pairsStart(int line) { return pairOffsets[line]; }
+    public int pairsEnd(int line) { return pairOffsets[line + 1]; }
+    /** 线路对 e 中的目标线路 */
+    public int pairLine(int e) { return pairLine[e]; }
+
+    /** 查找线路对 (from, to)，不能换乘返回 -1 */
+    public int findPair(int from, int to) {
+        int idx = Arrays.binarySearch(pairLine, pairOffsets[from], pairOffsets[from + 1], to);
+        return idx >= 0 ? idx : -1;
+    }
+
+    // --- 公共站点 ---
+
+    public int sharedStart(int e) { return sharedOffsets[e]; }
+    public int sharedEnd(int e) { return sharedOffsets[e + 1]; }
+    public int sharedStop(int i) { return sharedStop[i]; }
+    /** 公共站点在换出线路上的位置 */
+    public int sharedPosFrom(int i) { return sharedPosFrom[i]; }
+    /** 公共站点在换入线路上的位置 */
+    public int sharedPosTo(int i) { return sharedPosTo[i]; }
+
+    public int pairCount() { return pairLine.length; }
+}
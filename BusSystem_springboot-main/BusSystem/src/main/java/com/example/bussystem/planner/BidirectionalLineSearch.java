@@ -0,0 +1,128 @@
+package com.example.bussystem.planner;
+
+import com.example.bussystem.graph.TransferTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 双向线路序列搜索（BFS 引擎的可选实现）
+ * 从起点线路向前、从终点线路向后各展开约一半的深度，再通过换乘表在中间拼接，
+ * 枚举范围从“分支数^换乘次数”降到约“分支数^(换乘次数/2)”。
+ *
+ * 输出与单向 BFS 完全相同的线路序列集合，并按单向 BFS 的出队顺序排列：
+ *   - 第一条线路经过起点，最后一条线路经过终点，至少两条线路，线路不重复
+ *   - 中间线路（除第一条外、最后一条之前）都不经过终点
+ * 长度为 m 的序列固定在前 ceil(m/2) 条处切分，每条序列只会被拼出一次。
+ * 传入搜索预算时，两侧展开的每条半程序列和拼接时的每条前半段各计一次；用完后停止，返回已拼出的序列。
+ */
+public class BidirectionalLineSearch {
+
+    /**
+     * @param startLines 经过起点的线路（稠密编号），顺序即单向 BFS 的入队顺序
+     * @param isEndLine  各线路是否经过终点
+     * @param maxLines   最多乘坐的线路数（换乘次数 + 1）
+     * @param toEnd      各线路到终点线路的最少换乘次数，用于剪掉前半段中注定到不了终点的序列；为 null 时不剪枝
+     * @param budget     搜索预算，为 null 时不限
+     * @return 线路序列（稠密编号）
+     */
+    public List<int[]> search(TransferTable tt, int[] startLines, boolean[] isEndLine, int maxLines, int[] toEnd,
+                              SearchBudget budget) {
+        List<int[]> results = new ArrayList<>();
+        if (maxLines < 2) return results;
+        int lineCount = isEndLine.length;
+        int forwardDepth = (maxLines + 1) / 2;
+        int backwardDepth = maxLines / 2;
+
+        // 1. 向前：从起点线路出发，除第一条外不经过终点
+        List<int[]> forward = new ArrayList<>();
+        int[] path = new int[maxLines];
+        for (int s : startLines) {
+            path[0] = s;
+            expand(tt, path, 1, forwardDepth, isEndLine, maxLines, toEnd, budget, forward);
+        }
+
+        // 2. 向后：从终点线路倒推，除最后一条外不经过终点；按第一条线路分桶
+        List<List<int[]>> backwardByFirst = new ArrayList<>(lineCount);
+        for (int l = 0; l < lineCount; l++) backwardByFirst.add(null);
+        List<int[]> backward = new ArrayList<>();
+        for (int e = 0; e < lineCount; e++) {
+            if (!isEndLine[e]) continue;
+            path[0] = e;
+            expand(tt, path, 1, backwardDepth, isEndLine, maxLines, null, budget, backward);
+        }
+        for (int[] b : backward) {
+            // 展开时是倒序记录的，这里翻转为乘坐顺序
+            reverse(b);
+            List<int[]> bucket = backwardByFirst.get(b[0]);
+            if (bucket == null) backwardByFirst.set(b[0], bucket = new ArrayList<>());
+            bucket.add(b);
+        }
+
+        // 3. 中间拼接：前半段末尾线路与后半段首条线路可换乘，且前半段长度为总长的 ceil(m/2)
+        for (int[] f : forward) {
+            if (budget != null && !budget.spend(1)) break;
+            int last = f[f.length - 1];
+            for (int e = tt.pairsStart(last); e < tt.pairsEnd(last); e++) {
+                List<int[]> bucket = backwardByFirst.get(tt.pairLine(e));
+                if (bucket == null) continue;
+                for (int[] b : bucket) {
+                    if (b.length != f.length && b.length != f.length - 1) continue;
+                    if (f.length + b.length > maxLines || !disjoint(f, b)) continue;
+                    int[] joined = Arrays.copyOf(f, f.length + b.length);
+                    System.arraycopy(b, 0, joined, f.length, b.length);
+                    results.add(joined);
+                }
+            }
+        }
+
+        // 4. 还原单向 BFS 的顺序：先按长度，再按起点线路的入队顺序，其后按线路编号
+        int[] startRank = new int[lineCount];
+        for (int i = 0; i < startLines.length; i++) startRank[startLines[i]] = i;
+        results.sort(Comparator.<int[]>comparingInt(p -> p.length)
+                .thenComparingInt(p -> startRank[p[0]])
+                .thenComparing((a, b) -> Arrays.compare(a, 1, a.length, b, 1, b.length)));
+        return results;
+    }
+
+    // 深度优先列出以 path[0..depth) 为前缀、长度不超过 maxDepth 的全部序列，新加入的线路都不经过终点
+    private void expand(TransferTable tt, int[] path, int depth, int maxDepth, boolean[] isEndLine,
+                        int maxLines, int[] toEnd, SearchBudget budget, List<int[]> out) {
+        // 已乘 depth 条线路，至少还要 toEnd 条才能到达终点
+        if (toEnd != null && depth + toEnd[path[depth - 1]] > maxLines) return;
+        if (budget != null && !budget.spend(1)) return;
+        out.add(Arrays.copyOf(path, depth));
+        if (depth == maxDepth) return;
+        int last = path[depth - 1];
+        for (int e = tt.pairsStart(last); e < tt.pairsEnd(last); e++) {
+            int next = tt.pairLine(e);
+            if (isEndLine[next] || contains(path, depth, next)) continue;
+            path[depth] = next;
+            expand(tt, path, depth + 1, maxDepth, isEndLine, maxLines, toEnd, budget, out);
+        }
+    }
+
+    private static boolean contains(int[] path, int length, int line) {
+        for (int i = 0; i < length; i++) {
+            if (path[i] == line) return true;
+        }
+        return false;
+    }
+
+    private static boolean disjoint(int[] a, int[] b) {
+        for (int x : b) {
+            if (contains(a, a.length, x)) return false;
+        }
+        return true;
+    }
+
+    private static void reverse(int[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.bussystem.planner;
+
+import com.example.bussystem.graph.CompactGraph;
+import com.example.bussystem.graph.ConnectionTable;
+import com.example.bussystem.graph.FootpathTable;
+import com.example.bussystem.graph.Timetable;
+import com.example.bussystem.graph.TransferMatrix;
+
+import java.util.*;
+
+/**
+ * 连接扫描（Connection Scan Algorithm）
+ * 从出发时刻起按出发先后顺序扫描一遍连接数组：能在某站赶上的班次被标记为“已上车”，
+ * 随后这趟班次的每条连接都可以更新沿途站点的最早到达时刻；出发时刻晚于已知最早到达终点的时刻即可停止。
+ *
+ * 为了遵守最大换乘次数，到达时刻按“已乘坐的班次数”分层记录，结果为各换乘次数下的最早到达方案
+ * （只保留比更少换乘的方案更早到达的那些）。换乘口径与 RAPTOR 一致：
+ * 换乘至少预留 Timetable.MIN_TRANSFER_MINUTES，不在本线路后续还会到达终点的班次上中途下车，
+ * 步行换乘不连续、不直接步行到终点。
+ *
+ * 传入最少换乘矩阵时，乘上某班次后剩余的班次数不够到达终点的，不再上车。
+ * 传入搜索预算时按扫描的连接数计数，预算用完后停止扫描，返回此前已到达终点的方案。
+ */
+public class CsaPlanner {
+
+    private static final int INF = Integer.MAX_VALUE;
+    private static final int BUDGET_STEP = 256;
+
+    /**
+     * @param departAt 出发时刻（当天 0 点起的分钟数）
+     * @param matrix   最少换乘矩阵，为 null 时不剪枝
+     * @param budget   搜索预算，为 null 时不限
+     */
+    public List<RouteCandidate> search(CompactGraph g, ConnectionTable ct, FootpathTable footpaths,
+                                       Integer startSid, int departAt, Integer endSid, int maxTransfers,
+                                       TransferMatrix matrix, SearchBudget budget) {
+        int start = g.stopIndexOf(startSid);
+        int end = g.stopIndexOf(endSid);
+        if (start < 0 || end < 0 || start == end || maxTransfers < 0) return Collections.emptyList();
+
+        int rounds = maxTransfers + 1;
+        int stopCount = g.stationCount();
+        // 各线路乘上后至少还要换乘几次才能到达终点
+        int[] toEnd = matrix == null ? null : matrix.transfersToStop(g, end);
+
+        // arrival[r][s]：乘坐 r 个班次到达 s 的最早时刻；enter/exit 为该标签所乘班次的上车、下车连接，
+        // walkFrom 为步行而来时的步行起点（-1 表示乘车直接到达）
+        int[][] arrival = new int[rounds + 1][];
+        int[][] enterConn = new int[rounds + 1][];
+        int[][] exitConn = new int[rounds + 1][];
+        int[][] walkFrom = new int[rounds + 1][];
+        for (int r = 0; r <= rounds; r++) {
+            arrival[r] = newFilled(stopCount, INF);
+            enterConn[r] = new int[stopCount];
+            exitConn[r] = new int[stopCount];
+            walkFrom[r] = newFilled(stopCount, -1);
+        }
+        arrival[0][start] = departAt;
+
+        // 班次状态：最少需要乘坐几个班次（含本班次）才能坐上，以及对应的上车连接
+        int[] tripRound = newFilled(ct.tripCount(), INF);
+        int[] tripEnter = new int[ct.tripCount()];
+
+        // 各线路各方向上终点最后一次出现的步数：在它之前上车的班次只能坐到终点
+        int[] lastEndStep = newFilled(g.lineCount() * 2, -1);
+        for (int i = g.stopLinesStart(end); i < g.stopLinesEnd(end); i++) {
+            int l = g.stopLineAt(i);
+            lastEndStep[2 * l] = g.lastPositionOf(l, end);
+            lastEndStep[2 * l + 1] = g.lineLength(l) - 1 - g.positionOf(l, end);
+        }
+
+        int bestEnd = INF;
+        int first = ct.firstDepartingAt(departAt);
+        for (int c = first; c < ct.size(); c++) {
+            int depTime = ct.depTime(c);
+            if (depTime >= bestEnd) break;
+            // 每扫描 BUDGET_STEP 个连接计一次数，避免逐个连接读时钟
+            if (budget != null && (c - first) % BUDGET_STEP == 0 && !budget.spend(BUDGET_STEP)) break;
+
+            int trip = ct.trip(c);
+            int line = ct.tripLine(trip);
+            int dep = ct.depStop(c);
+
+            // 1. 尝试用更少的班次坐上这趟车；班次数相同时改为从本站上车，
+            //    到达时刻不变而少坐几站（环线上同一站点出现两次时不会先绕一圈）
+            if (dep != end) {
+                // 作为第 r+1 个班次乘上后还需 toEnd 次换乘，总数不能超过 rounds
+                int maxBoard = toEnd == null ? rounds : rounds - toEnd[line];
+                for (int r = 0; r < Math.min(tripRound[trip], maxBoard); r++) {
+                    int a = arrival[r][dep];
+                    if (a == INF) continue;
+                    if ((r == 0 ? a : a + Timetable.MIN_TRANSFER_MINUTES) > depTime) continue;
+                    // 上一段刚乘坐的就是本线路时不重复上车
+                    if (r > 0 && ct.tripLine(ct.trip(exitConn[r][dep])) == line) continue;
+                    tripRound[trip] = r + 1;
+                    tripEnter[trip] = c;
+                    break;
+                }
+            }
+            int r = tripRound[trip];
+            if (r == INF) continue;
+
+            // 2. 更新到达站
+            int arr = ct.arrStop(c);
+            int arrTime = ct.arrTime(c);
+            if (arr == end) {
+                if (arrTime < arrival[r][end]) {
+                    arrival[r][end] = arrTime;
+                    enterConn[r][end] = tripEnter[trip];
+                    exitConn[r][end] = c;
+                    bestEnd = Math.min(bestEnd, arrTime);
+                }
+                continue;
+            }
+            // 本班次上车后还会经过终点时，只在终点下车（不坐过站、不多此一举）
+            int boardStep = ct.arrStep(tripEnter[trip]) - 1;
+            if (lastEndStep[2 * line + ct.tripDir(trip)] > boardStep) continue;
+            if (arrTime >= arrival[r][arr]) continue;
+
+            arrival[r][arr] = arrTime;
+            enterConn[r][arr] = tripEnter[trip];
+            exitConn[r][arr] = c;
+            walkFrom[r][arr] = -1;
+
+            // 3. 步行换乘：只从乘车到达的站点出发，不直接步行到终点
+            if (footpaths != null && r < rounds) {
+                for (int i = footpaths.footpathsStart(arr); i < footpaths.footpathsEnd(arr); i++) {
+                    int t = footpaths.target(i);
+                    if (t == end) continue;
+                    int walkArrival = arrTime + footpaths.minutes(i);
+                    if (walkArrival < arrival[r][t]) {
+                        arrival[r][t] = walkArrival;
+                        enterConn[r][t] = tripEnter[trip];
+                        exitConn[r][t] = c;
+                        walkFrom[r][t] = arr;
+                    }
+                }
+            }
+        }
+
+        // 4. 回溯：只保留比更少换乘的方案到达更早的结果
+        List<RouteCandidate> results = new ArrayList<>();
+        int bestSoFar = INF;
+        for (int r = 1; r <= rounds; r++) {
+            if (arrival[r][end] >= bestSoFar) continue;
+            bestSoFar = arrival[r][end];
+            RouteCandidate c = backtrack(g, ct, enterConn, exitConn, walkFrom, r, start, end);
+            if (c != null) results.add(c);
+        }
+        return results;
+    }
+
+    private RouteCandidate backtrack(CompactGraph g, ConnectionTable ct, int[][] enterConn, int[][] exitConn,
+                                     int[][] walkFrom, int rounds, int start, int end) {
+        LinkedList<Integer> lines = new LinkedList<>();
+        LinkedList<Integer> points = new LinkedList<>();
+        LinkedList<Integer> alights = new LinkedList<>();
+        int[] boards = new int[rounds];
+        int[] alightsAt = new int[rounds];
+        boolean walked = false;
+        points.addFirst(g.stationId(end));
+
+        int stop = end;
+        for (int r = rounds; r >= 1; r--) {
+            int alight = walkFrom[r][stop] >= 0 ? walkFrom[r][stop] : stop;
+            walked |= alight != stop;
+            int enter = enterConn[r][stop];
+            int exit = exitConn[r][stop];
+            int trip = ct.trip(exit);
+            alights.addFirst(g.stationId(alight));
+            lines.addFirst(g.lineId(ct.tripLine(trip)));
+            boards[r - 1] = positionOf(g, ct, trip, ct.arrStep(enter) - 1);
+            alightsAt[r - 1] = positionOf(g, ct, trip, ct.arrStep(exit));
+            stop = ct.depStop(enter);
+            points.addFirst(g.stationId(stop));
+        }
+        if (stop != start) return null;
+        return new RouteCandidate(new ArrayList<>(lines), new ArrayList<>(points),
+                walked ? new ArrayList<>(alights) : null, boards, alightsAt);
+    }
+
+    // 班次上距始发站 step 站的站点在线路序列中的位置
+    private static int positionOf(CompactGraph g, ConnectionTable ct, int trip, int step) {
+        return ct.tripDir(trip) == 0 ? step : g.lineLength(ct.tripLine(trip)) - 1 - step;
+    }
+
+    private static int[] newFilled(int size, int value) {
+        int[] a = new int[size];
+        Arrays.fill(a, value);
+        return a;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bussystem.planner;
+
+/**
+ * 存放 long 的哈希集合：开放寻址、线性探测，不装箱
+ * 用于单次请求内的路线签名去重，不支持删除
+ */
+public class LongHashSet {
+
+    private long[] keys;
+    // 0 作为空槽标记，真正的 0 单独记录
+    private boolean hasZero;
+    private int size;
+
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        keys = new long[capacity];
+    }
+
+    /**
+     * @return 集合中原本没有该值时返回 true
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        if ((size + 1) * 2 > keys.length) grow();
+        return insert(keys, key);
+    }
+
+    public int size() { return size; }
+
+    private boolean insert(long[] table, long key) {
+        int mask = table.length - 1;
+        int i = (int) (key ^ (key >>> 32)) & mask;
+        while (table[i] != 0) {
+            if (table[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+        size++;
+        return true;
+    }
+
+    private void grow() {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        size = hasZero ? 1 : 0;
+        for (long k : old) {
+            if (k != 0) insert(keys, k);
+        }
+    }
+}
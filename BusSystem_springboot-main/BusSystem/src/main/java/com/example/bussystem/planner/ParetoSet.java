@@ -0,0 +1,64 @@
+package com.example.bussystem.planner;
+
+import java.util.Arrays;
+
+/**
+ * 多准则 Pareto 集合：耗时、换乘次数、乘坐站数，三项均为越小越好
+ * 集合中任意两个方案互不支配。方案数通常只有个位数，线性扫描即可。
+ */
+public class ParetoSet {
+
+    private int[] time = new int[8];
+    private int[] transfers = new int[8];
+    private int[] stops = new int[8];
+    private int size;
+
+    /**
+     * 集合中是否已有方案在三项上都不差于给定方案（包括完全相同）
+     */
+    public boolean covers(int t, int k, int n) {
+        for (int i = 0; i < size; i++) {
+            if (time[i] <= t && transfers[i] <= k && stops[i] <= n) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 集合中是否有方案严格支配给定方案：三项都不差，且至少一项更好
+     */
+    public boolean dominates(int t, int k, int n) {
+        for (int i = 0; i < size; i++) {
+            if (time[i] <= t && transfers[i] <= k && stops[i] <= n
+                    && (time[i] < t || transfers[i] < k || stops[i] < n)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 加入方案并移除被它支配的旧方案
+     * @return 方案已被集合覆盖时不加入，返回 false
+     */
+    public boolean add(int t, int k, int n) {
+        if (covers(t, k, n)) return false;
+        int w = 0;
+        for (int i = 0; i < size; i++) {
+            if (t <= time[i] && k <= transfers[i] && n <= stops[i]) continue;
+            time[w] = time[i];
+            transfers[w] = transfers[i];
+            stops[w] = stops[i];
+            w++;
+        }
+        if (w == time.length) {
+            time = Arrays.copyOf(time, w * 2);
+            transfers = Arrays.copyOf(transfers, w * 2);
+            stops = Arrays.copyOf(stops, w * 2);
+        }
+        time[w] = t;
+        transfers[w] = k;
+        stops[w] = n;
+        size = w + 1;
+        return true;
+    }
+
+    public int size() { return size; }
+}
@@ -0,0 +1,343 @@
+package com.example.bussystem.planner;
+
+import com.example.bussystem.graph.CompactGraph;
+import com.example.bussystem.graph.FootpathTable;
+import com.example.bussystem.graph.Timetable;
+import com.example.bussystem.graph.TransferMatrix;
+
+import java.util.*;
+
+/**
+ * 按轮次的换乘搜索（RAPTOR 思路）
+ * 第 k 轮计算“恰好乘坐 k 条线路”时到达每个站点的最短耗时，
+ * 每轮只扫描经过上一轮被改进站点的线路，总代价随轮次线性增长，
+ * 不再像线路序列 BFS 那样随换乘次数指数膨胀。
+ *
+ * 线路可双向乘坐（与 createRoute 的口径一致），因此每条线路正反各扫描一次。
+ * 到达终点的结果按 (轮次, 最后一条线路) 各保留一条最优方案，再从中筛选互不支配的方案。
+ *
+ * 每轮扫描线路后，再沿步行换乘表把本轮乘车到达的站点扩展到附近站点（不连续步行），
+ * 下一轮即可从这些站点上车。
+ *
+ * 传入时刻表时按实际班次搜索：标签为到达的时刻，上车时找最早能赶上的一班车，
+ * 等车时间即为实际换乘代价；不传时按固定的换乘耗时估算。
+ *
+ * 多准则：轮次即换乘次数，每个标签另外记录累计乘坐站数（耗时相同时取站数少的）。
+ * 已到达终点的方案构成 (耗时, 换乘, 站数) 的 Pareto 集合，被其支配的中间标签直接剪掉；
+ * 最终只回溯互不支配的方案，被支配的候选不会生成 DTO。
+ *
+ * 传入最少换乘矩阵时，第 k 轮跳过“乘上后即使换乘次数最少也赶不及在剩余轮次内到达终点”的线路。
+ * 传入搜索预算时，每轮按扫描的线路数计数；预算用完后不再开始新的一轮（第 1 轮即直达方案总会完整搜索），
+ * 返回已完成各轮中的方案。
+ */
+public class RaptorPlanner {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    /**
+     * @param footpaths 步行换乘表，为 null 时只允许同站换乘
+     * @param matrix    最少换乘矩阵，为 null 时不剪枝
+     * @param budget    搜索预算，为 null 时不限
+     */
+    public List<RouteCandidate> search(CompactGraph g, FootpathTable footpaths, Integer startSid, Integer endSid,
+                                       int maxTransfers, TransferMatrix matrix, SearchBudget budget) {
+        int start = g.stopIndexOf(startSid);
+        if (start < 0) return Collections.emptyList();
+        return search(g, footpaths, null, new int[]{start}, new int[]{0}, endSid, maxTransfers, matrix, budget);
+    }
+
+    /**
+     * 按时刻表搜索
+     * @param departAt 出发时刻（当天 0 点起的分钟数）
+     */
+    public List<RouteCandidate> search(CompactGraph g, FootpathTable footpaths, Timetable timetable,
+                                       Integer startSid, int departAt, Integer endSid, int maxTransfers,
+                                       TransferMatrix matrix, SearchBudget budget) {
+        int start = g.stopIndexOf(startSid);
+        if (start < 0) return Collections.emptyList();
+        return search(g, footpaths, timetable, new int[]{start}, new int[]{departAt}, endSid, maxTransfers,
+                matrix, budget);
+    }
+
+    /**
+     * 多起点搜索：按坐标规划时，步行范围内的每个站点都是起点，初始耗时为步行时间
+     * @param timetable  时刻表，为 null 时按固定换乘耗时估算
+     * @param startStops 起点站（稠密编号）
+     * @param startTimes 到达各起点站的初始耗时(分钟)；按时刻表搜索时为到达时刻
+     */
+    public List<RouteCandidate> search(CompactGraph g, FootpathTable footpaths, Timetable timetable,
+                                       int[] startStops, int[] startTimes, Integer endSid, int maxTransfers,
+                                       TransferMatrix matrix, SearchBudget budget) {
+        int end = g.stopIndexOf(endSid);
+        if (startStops.length == 0 || end < 0 || maxTransfers < 0) return Collections.emptyList();
+
+        int rounds = maxTransfers + 1;
+        int stopCount = g.stationCount();
+        // 各线路乘上后至少还要换乘几次才能到达终点
+        int[] toEnd = matrix == null ? null : matrix.transfersToStop(g, end);
+        int lineCount = g.lineCount();
+
+        // arrival[k][s]：乘坐 k 条线路到达 s 的最短耗时；parent 记录该标签由哪条线路、从哪一站上车而来
+        int[][] arrival = new int[rounds + 1][];
+        int[][] parentLine = new int[rounds + 1][];
+        int[][] parentBoard = new int[rounds + 1][];
+        // walkFrom[k][s]：该标签是从哪个站点步行过来的，-1 表示乘车直接到达
+        int[][] walkFrom = new int[rounds + 1][];
+        // rideStops[k][s]：该标签累计乘坐的站数
+        int[][] rideStops = new int[rounds + 1][];
+        // boardPos/alightPos[k][s]：该标签最后一段在线路序列中的上车、下车位置
+        int[][] boardPos = new int[rounds + 1][];
+        int[][] alightPos = new int[rounds + 1][];
+        int[] best = new int[stopCount];
+        Arrays.fill(best, INF);
+
+        arrival[0] = newFilled(stopCount, INF);
+        rideStops[0] = new int[stopCount];
+        boolean[] marked = new boolean[stopCount];
+        for (int i = 0; i < startStops.length; i++) {
+            int s = startStops[i];
+            if (startTimes[i] < arrival[0][s]) {
+                arrival[0][s] = startTimes[i];
+                best[s] = startTimes[i];
+                marked[s] = true;
+            }
+        }
+
+        // 到达终点的方案：按 (轮次, 线路) 记录最短耗时、乘坐站数和上车站
+        int[][] endTime = new int[rounds + 1][];
+        int[][] endStops = new int[rounds + 1][];
+        int[][] endBoard = new int[rounds + 1][];
+        int[][] endBoardPos = new int[rounds + 1][];
+        int[][] endAlightPos = new int[rounds + 1][];
+        // 已到达终点的方案，用于剪掉注定被支配的中间标签
+        ParetoSet reached = new ParetoSet();
+
+        boolean[] lineQueued = new boolean[lineCount];
+        int[] queue = new int[lineCount];
+
+        for (int k = 1; k <= rounds; k++) {
+            // 1. 收集经过上一轮被改进站点的线路
+            int queueSize = 0;
+            for (int s = 0; s < stopCount; s++) {
+                if (!marked[s]) continue;
+                marked[s] = false;
+                for (int i = g.stopLinesStart(s); i < g.stopLinesEnd(s); i++) {
+                    int l = g.stopLineAt(i);
+                    if (toEnd != null && toEnd[l] > rounds - k) continue;
+                    if (!lineQueued[l]) {
+                        lineQueued[l] = true;
+                        queue[queueSize++] = l;
+                    }
+                }
+            }
+            if (queueSize == 0) break;
+            if (k > 1 && budget != null && !budget.spend(queueSize)) break;
+
+            int[] prev = arrival[k - 1];
+            int[] prevStops = rideStops[k - 1];
+            int[] prevLine = parentLine[k - 1];
+            int[] cur = newFilled(stopCount, INF);
+            int[] curLine = new int[stopCount];
+            int[] curBoard = new int[stopCount];
+            arrival[k] = cur;
+            parentLine[k] = curLine;
+            parentBoard[k] = curBoard;
+            int[] curWalk = newFilled(stopCount, -1);
+            walkFrom[k] = curWalk;
+            int[] curStops = new int[stopCount];
+            rideStops[k] = curStops;
+            int[] curBoardPos = new int[stopCount];
+            int[] curAlightPos = new int[stopCount];
+            boardPos[k] = curBoardPos;
+            alightPos[k] = curAlightPos;
+            endTime[k] = newFilled(lineCount, INF);
+            endStops[k] = new int[lineCount];
+            endBoard[k] = new int[lineCount];
+            endBoardPos[k] = new int[lineCount];
+            endAlightPos[k] = new int[lineCount];
+            int penalty = k > 1 ? CompactGraph.TRANSFER_PENALTY : 0;
+
+            // 2. 逐条线路正反两个方向扫描
+            for (int qi = 0; qi < queueSize; qi++) {
+                int l = queue[qi];
+                lineQueued[l] = false;
+                int len = g.lineLength(l);
+                int interval = g.interval(l);
+
+                for (int dir = 0; dir < 2; dir++) {
+                    // 本方向上终点最后一次出现的位置：在它之前下车换乘属于“多此一举”（原车就能到终点）
+                    int lastEndStep;
+                    if (dir == 0) {
+                        lastEndStep = g.lastPositionOf(l, end);
+                    } else {
+                        int firstEnd = g.positionOf(l, end);
+                        lastEndStep = firstEnd < 0 ? -1 : len - 1 - firstEnd;
+                    }
+
+                    // boardBase = 上车时刻 - 上车位置已行驶的站数 * interval，便于直接算出后续站点到达时间
+                    long boardBase = Long.MAX_VALUE;
+                    // boardStopsBase = 上车时累计站数 - 上车位置的步数，同理可直接算出后续站点的累计站数
+                    int boardStopsBase = 0;
+                    int boardStop = -1;
+                    int boardStep = -1;
+                    int endSeenStep = -1;
+
+                    for (int step = 0; step < len; step++) {
+                        int pos = dir == 0 ? step : len - 1 - step;
+                        int s = g.stopAt(l, pos);
+
+                        // 先下车：用当前上车方案更新到达时间
+                        if (boardStop >= 0 && s != boardStop) {
+                            int t = (int) (boardBase + (long) step * interval);
+                            int n = boardStopsBase + step;
+                            if (s == end) {
+                                if (t < endTime[k][l] || (t == endTime[k][l] && n < endStops[k][l])) {
+                                    endTime[k][l] = t;
+                                    endStops[k][l] = n;
+                                    endBoard[k][l] = boardStop;
+                                    endBoardPos[k][l] = dir == 0 ? boardStep : len - 1 - boardStep;
+                                    endAlightPos[k][l] = pos;
+                                    reached.add(t, k - 1, n);
+                                }
+                            } else if (step >= lastEndStep && endSeenStep < boardStep
+                                    && (t < cur[s] || (t == cur[s] && n < curStops[s]))
+                                    && !reached.covers(t, k, n)) {
+                                // 只在既不会坐过终点、也不会错过直达的站点换乘；
+                                // 从这里继续至少还要换乘一次，已到达终点的方案不差于它时不必继续
+                                cur[s] = t;
+                                curStops[s] = n;
+                                curLine[s] = l;
+                                curBoard[s] = boardStop;
+                                curBoardPos[s] = dir == 0 ? boardStep : len - 1 - boardStep;
+                                curAlightPos[s] = pos;
+                                if (t < best[s]) {
+                                    best[s] = t;
+                                    marked[s] = true;
+                                }
+                            }
+                        }
+                        if (s == end) endSeenStep = step;
+
+                        // 再上车：上一轮能到达此站且比当前车次更早，则改为从此站上车
+                        // 上一段刚乘坐的就是本线路时不重复上车
+                        if (s != end && prev[s] != INF && (prevLine == null || prevLine[s] != l)) {
+                            long base;
+                            if (timetable == null) {
+                                base = (long) prev[s] + penalty - (long) step * interval;
+                            } else {
+                                // 赶得上的最早一班车在始发站的发车时刻，已过末班则不能上车；
+                                // 当前所乘车次到达此站时还赶不上，则更早的车次也赶不上，无需查表
+                                int ready = prev[s] + (k > 1 ? Timetable.MIN_TRANSFER_MINUTES : 0);
+                                if (boardBase != Long.MAX_VALUE && boardBase + (long) step * interval < ready) {
+                                    base = Long.MAX_VALUE;
+                                } else {
+                                    int departure = timetable.nextDeparture(l, ready - step * interval);
+                                    base = departure == Timetable.NO_DEPARTURE ? Long.MAX_VALUE : departure;
+                                }
+                            }
+                            if (base < boardBase || (base == boardBase && base != Long.MAX_VALUE
+                                    && prevStops[s] - step < boardStopsBase)) {
+                                boardBase = base;
+                                boardStopsBase = prevStops[s] - step;
+                                boardStop = s;
+                                boardStep = step;
+                            }
+                        }
+                    }
+                }
+            }
+
+            // 3. 步行换乘：只从本轮乘车改进的站点出发，步行到达的站点不再继续步行
+            if (footpaths != null && footpaths.count() > 0 && k < rounds) {
+                for (int s = 0; s < stopCount; s++) {
+                    if (!marked[s] || curWalk[s] >= 0) continue;
+                    for (int i = footpaths.footpathsStart(s); i < footpaths.footpathsEnd(s); i++) {
+                        int t = footpaths.target(i);
+                        if (t == end) continue;
+                        int time = cur[s] + footpaths.minutes(i);
+                        if ((time < cur[t] || (time == cur[t] && curStops[s] < curStops[t]))
+                                && !reached.covers(time, k, curStops[s])) {
+                            cur[t] = time;
+                            curStops[t] = curStops[s];
+                            curLine[t] = curLine[s];
+                            curBoard[t] = curBoard[s];
+                            curBoardPos[t] = curBoardPos[s];
+                            curAlightPos[t] = curAlightPos[s];
+                            curWalk[t] = s;
+                            if (time < best[t]) {
+                                best[t] = time;
+                                marked[t] = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // 4. 只回溯互不支配的方案：按 (耗时, 换乘, 站数) 排序后依次放入 Pareto 集合
+        List<int[]> arrivals = new ArrayList<>();
+        for (int k = 1; k <= rounds; k++) {
+            if (endTime[k] == null) break;
+            for (int l = 0; l < lineCount; l++) {
+                if (endTime[k][l] != INF) arrivals.add(new int[]{endTime[k][l], k, endStops[k][l], l});
+            }
+        }
+        arrivals.sort(Comparator.<int[]>comparingInt(a -> a[0])
+                .thenComparingInt(a -> a[1])
+                .thenComparingInt(a -> a[2]));
+
+        ParetoSet front = new ParetoSet();
+        List<RouteCandidate> results = new ArrayList<>();
+        for (int[] a : arrivals) {
+            if (!front.add(a[0], a[1] - 1, a[2])) continue;
+            int k = a[1];
+            int l = a[3];
+            RouteCandidate c = backtrack(g, arrival[0], parentLine, parentBoard, walkFrom, boardPos, alightPos,
+                    k, l, endBoard[k][l], endBoardPos[k][l], endAlightPos[k][l], end);
+            if (c != null) results.add(c);
+        }
+        return results;
+    }
+
+    private RouteCandidate backtrack(CompactGraph g, int[] origins, int[][] parentLine, int[][] parentBoard,
+                                     int[][] walkFrom, int[][] boardPos, int[][] alightPos,
+                                     int k, int lastLine, int lastBoard, int lastBoardPos, int lastAlightPos, int end) {
+        LinkedList<Integer> lines = new LinkedList<>();
+        LinkedList<Integer> points = new LinkedList<>();
+        LinkedList<Integer> alights = new LinkedList<>();
+        int[] boards = new int[k];
+        int[] alightsAt = new int[k];
+        boards[k - 1] = lastBoardPos;
+        alightsAt[k - 1] = lastAlightPos;
+        boolean walked = false;
+        points.addFirst(g.stationId(end));
+        alights.addFirst(g.stationId(end));
+        lines.addFirst(g.lineId(lastLine));
+        points.addFirst(g.stationId(lastBoard));
+
+        int stop = lastBoard;
+        for (int r = k - 1; r >= 1; r--) {
+            // 步行到达的标签，实际下车站是步行的出发站
+            int alight = walkFrom[r][stop] >= 0 ? walkFrom[r][stop] : stop;
+            walked |= alight != stop;
+            int l = parentLine[r][stop];
+            int board = parentBoard[r][stop];
+            alights.addFirst(g.stationId(alight));
+            lines.addFirst(g.lineId(l));
+            points.addFirst(g.stationId(board));
+            boards[r - 1] = boardPos[r][stop];
+            alightsAt[r - 1] = alightPos[r][stop];
+            stop = board;
+        }
+        // 回溯的第一段必须从某个起点上车
+        if (origins[stop] == INF) return null;
+        return new RouteCandidate(new ArrayList<>(lines), new ArrayList<>(points),
+                walked ? new ArrayList<>(alights) : null, boards, alightsAt);
+    }
+
+    private static int[] newFilled(int size, int value) {
+        int[] a = new int[size];
+        Arrays.fill(a, value);
+        return a;
+    }
+}
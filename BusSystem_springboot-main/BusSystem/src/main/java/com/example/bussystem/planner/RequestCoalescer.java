@@ -0,0 +1,55 @@
+package com.example.bussystem.planner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 并发相同请求合并
+ * 同一个 key 同时只有一个线程真正执行计算，其余线程等待并共享它的结果，
+ * 避免高峰期大量相同查询同时打满 CPU。计算完成后立即移除，不承担缓存职责。
+ */
+public class RequestCoalescer<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public V execute(K key, Supplier<V> computation) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            V value = computation.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // 把计算线程抛出的原始异常交给等待方
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    /** 当前正在计算的 key 数量 */
+    public int inFlightCount() { return inFlight.size(); }
+
+    /** 累计被合并（未重复计算）的请求数 */
+    public long getCoalesced() { return coalesced.get(); }
+}
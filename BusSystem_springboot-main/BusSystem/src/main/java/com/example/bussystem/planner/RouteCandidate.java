@@ -0,0 +1,32 @@
+package com.example.bussystem.planner;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 搜索引擎输出的候选方案
+ * lines[i] 表示第 i 段乘坐的线路，在 transferPoints[i] 上车、transferPoints[i+1] 下车
+ * 有步行换乘时，第 i 段在 alightPoints[i] 下车，再步行到 transferPoints[i+1]
+ */
+@Data
+@AllArgsConstructor
+public class RouteCandidate {
+    private List<Integer> lines;
+    private List<Integer> transferPoints;
+    // 各段的下车站，为 null 表示全部为同站换乘
+    private List<Integer> alightPoints;
+    // 各段上下车站在线路序列中的位置，由搜索引擎直接给出（环线上同一站点可能出现两次）；
+    // 为 null 时由 createRoute 按站点推断
+    private int[] boardPositions;
+    private int[] alightPositions;
+
+    public RouteCandidate(List<Integer> lines, List<Integer> transferPoints) {
+        this(lines, transferPoints, null);
+    }
+
+    public RouteCandidate(List<Integer> lines, List<Integer> transferPoints, List<Integer> alightPoints) {
+        this(lines, transferPoints, alightPoints, null, null);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bussystem.planner;
+
+import lombok.Getter;
+
+/**
+ * 规划过程中使用的紧凑方案
+ * 每段乘车只记录 (线路, 上车位置, 下车位置) 三个整数，位置为站点在线路序列中的下标；
+ * 途经站点列表和 Station 实体等到方案确定返回时才展开为 SegmentDTO，
+ * 在去重、排序和截断中被丢弃的候选不会产生这些对象。
+ *
+ * signature 是在 createRoute 中边校验边累积的 64 位结构签名，
+ * 覆盖每段的线路名、途经站点及步行换乘，去重时只比较这一个 long。
+ *
+ * 方案会放进结果缓存、被多个请求共用，创建后不再修改；需要调整时（如补上两端步行）生成新对象。
+ */
+@Getter
+public class RoutePlan {
+    // 第 i 段乘车：稠密线路编号、上车位置、下车位置
+    private final int[] lines;
+    private final int[] fromIdx;
+    private final int[] toIdx;
+    // 第 i 段下车后步行换乘使用的步行边（FootpathTable 下标），-1 表示同站换乘或已是最后一段
+    private final int[] walks;
+    // 按时刻表规划时第 i 段的上车时刻（分钟），静态规划为 null
+    private final int[] boardTimes;
+    // 出发时刻（分钟），静态规划为 -1
+    private final int departAt;
+    private final int totalStops;
+    private final long signature;
+    private final int duration;
+    // 按坐标规划时两端的步行距离(米)，为 null 表示直接从站点出发/到达
+    private final Integer startWalkMeters;
+    private final Integer endWalkMeters;
+
+    public RoutePlan(int[] lines, int[] fromIdx, int[] toIdx, int[] walks, int[] boardTimes,
+                     int departAt, int totalStops, int duration, long signature) {
+        this(lines, fromIdx, toIdx, walks, boardTimes, departAt, totalStops, duration, signature, null, null);
+    }
+
+    private RoutePlan(int[] lines, int[] fromIdx, int[] toIdx, int[] walks, int[] boardTimes,
+                      int departAt, int totalStops, int duration, long signature,
+                      Integer startWalkMeters, Integer endWalkMeters) {
+        this.lines = lines;
+        this.fromIdx = fromIdx;
+        this.toIdx = toIdx;
+        this.walks = walks;
+        this.boardTimes = boardTimes;
+        this.departAt = departAt;
+        this.totalStops = totalStops;
+        this.duration = duration;
+        this.signature = signature;
+        this.startWalkMeters = startWalkMeters;
+        this.endWalkMeters = endWalkMeters;
+    }
+
+    /**
+     * 补上两端步行后的新方案，原方案不变
+     * @param walkMinutes 两端步行合计耗时(分钟)，计入总耗时
+     */
+    public RoutePlan withWalk(int startWalkMeters, int endWalkMeters, int walkMinutes) {
+        return new RoutePlan(lines, fromIdx, toIdx, walks, boardTimes, departAt, totalStops,
+                duration + walkMinutes, signature, startWalkMeters, endWalkMeters);
+    }
+
+    /**
+     * 把一个整数并入签名（乘法散列后再做一次移位混合，避免相邻值只差低位）
+     */
+    public static long mix(long h, int v) {
+        h = (h ^ v) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    public int segmentCount() { return lines.length; }
+
+    public int getTransfers() { return lines.length - 1; }
+
+    public boolean isTimed() { return boardTimes != null; }
+}
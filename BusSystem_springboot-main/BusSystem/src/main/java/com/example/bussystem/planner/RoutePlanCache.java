@@ -0,0 +1,108 @@
+package com.example.bussystem.planner;
+
+import com.example.bussystem.graph.NetworkSnapshot;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 路径规划结果缓存（LRU，容量有限）
+ * 键为 (起点ID, 终点ID, 最大换乘次数)。每条结果记录计算时使用的快照，
+ * 路网快照被替换后旧结果一律视为未命中，因此不会返回过期方案；
+ * 替换前开始、替换后才算完的请求，其结果也不再放入，避免旧快照一直被引用。
+ * 缓存的是紧凑方案（缓存后不再修改），调用方每次据此生成新的 DTO，不会共享可变对象。
+ */
+public class RoutePlanCache {
+
+    private record Key(int startSid, int endSid, int maxTransfers) {}
+
+    private record Entry(NetworkSnapshot snapshot, List<RoutePlan> routes) {}
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile int capacity;
+    // 当前生效的路网快照
+    private final Supplier<NetworkSnapshot> currentSnapshot;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public RoutePlanCache(int capacity, Supplier<NetworkSnapshot> currentSnapshot) {
+        this.capacity = capacity;
+        this.currentSnapshot = currentSnapshot;
+    }
+
+    /**
+     * 查询缓存，未命中或结果来自旧快照时返回 null
+     */
+    public List<RoutePlan> get(NetworkSnapshot snapshot, int startSid, int endSid, int maxTransfers) {
+        if (capacity <= 0) return null;
+        Entry e;
+        synchronized (entries) {
+            e = entries.get(new Key(startSid, endSid, maxTransfers));
+        }
+        if (e != null && e.snapshot() == snapshot) {
+            hits.incrementAndGet();
+            return e.routes();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 放入结果；计算所用的快照已不是当前快照时直接丢弃
+     * 发布新快照时先替换快照再 invalidateAll()，两者之间放入的旧结果会被随后的清空带走
+     */
+    public void put(NetworkSnapshot snapshot, int startSid, int endSid, int maxTransfers, List<RoutePlan> routes) {
+        if (capacity <= 0) return;
+        synchronized (entries) {
+            if (snapshot != currentSnapshot.get()) return;
+            entries.put(new Key(startSid, endSid, maxTransfers), new Entry(snapshot, List.copyOf(routes)));
+        }
+    }
+
+    /**
+     * 路网变更后清空，释放对旧快照的引用
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+}
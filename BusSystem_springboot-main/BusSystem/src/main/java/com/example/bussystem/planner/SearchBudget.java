@@ -0,0 +1,56 @@
+package com.example.bussystem.planner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单次查询的搜索预算：展开状态数上限 + 截止时刻，防止个别查询（换乘次数很大、起终点为大枢纽）长时间占满 CPU
+ *
+ * 各引擎按自己的粒度计数：bfs 为生成的线路序列，双向搜索为展开的半程序列，raptor 为每轮扫描的线路，csa 为扫描的连接。
+ * 任一限制超出后引擎停止展开，已找到的方案照常返回，由调用方标记为不完整。
+ * bfs 并行展开时多个线程共用同一个预算。
+ */
+public class SearchBudget {
+
+    private final long maxStates;
+    // System.nanoTime() 意义下的截止时刻，0 表示不限时
+    private final long deadline;
+    private final AtomicLong spent = new AtomicLong();
+    private volatile boolean exhausted;
+
+    /**
+     * @param maxStates     展开状态数上限，不大于 0 表示不限
+     * @param timeoutMillis 从现在起的时限(毫秒)，不大于 0 表示不限
+     */
+    public SearchBudget(long maxStates, long timeoutMillis) {
+        this.maxStates = maxStates > 0 ? maxStates : Long.MAX_VALUE;
+        long d = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        this.deadline = d == 0 && timeoutMillis > 0 ? 1 : d;
+    }
+
+    public static SearchBudget unlimited() {
+        return new SearchBudget(0, 0);
+    }
+
+    /**
+     * 消耗 n 个状态；预算已用完（本次或之前）时返回 false，调用方应停止展开
+     */
+    public boolean spend(int n) {
+        if (exhausted) return false;
+        long total = spent.addAndGet(n);
+        if (total > maxStates || (deadline != 0 && System.nanoTime() - deadline > 0)) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /** 是否因预算用完而提前结束过 */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public long getSpent() {
+        return spent.get();
+    }
+}
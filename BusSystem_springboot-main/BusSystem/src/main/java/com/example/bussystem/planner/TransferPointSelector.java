@@ -0,0 +1,131 @@
+package com.example.bussystem.planner;
+
+import com.example.bussystem.graph.CompactGraph;
+import com.example.bussystem.graph.TransferTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 换乘站选择
+ * 给定一条线路序列，在每对相邻线路的公共站点中选出使总耗时最短的换乘站组合。
+ * 按线路逐段做动态规划，状态为“在当前线路上的上车位置”，候选只来自换乘表，规模很小。
+ *
+ * 以下换乘不会被选中（与 createRoute 的校验口径一致，避免生成注定被丢弃的候选）：
+ *   - 在上车站原地下车（这条线路等于没坐）
+ *   - 沿行驶方向本线路已经或即将经过终点（坐过站 / 多此一举）
+ */
+public class TransferPointSelector {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    /**
+     * @return 上下车站点ID序列（起点、各换乘站、终点），不存在合理方案时返回 null
+     */
+    public List<Integer> select(CompactGraph g, TransferTable tt, List<Integer> lineIds, Integer startSid, Integer endSid) {
+        int start = g.stopIndexOf(startSid);
+        int end = g.stopIndexOf(endSid);
+        if (start < 0 || end < 0) return null;
+
+        int m = lineIds.size();
+        int[] lines = new int[m];
+        for (int i = 0; i < m; i++) {
+            lines[i] = g.lineIndexOf(lineIds.get(i));
+            if (lines[i] < 0) return null;
+        }
+
+        // layers[i] 为第 i 条线路上的候选上车状态：{位置, 累计耗时, 上一层状态下标, 上车站}
+        List<List<int[]>> layers = new ArrayList<>(m);
+        List<int[]> first = new ArrayList<>();
+        for (int pos : positionsOf(g, lines[0], start)) {
+            first.add(new int[]{pos, 0, -1, start});
+        }
+        layers.add(first);
+
+        for (int i = 0; i < m - 1; i++) {
+            int line = lines[i];
+            int e = tt.findPair(line, lines[i + 1]);
+            if (e < 0) return null;
+            int[] endPositions = positionsOf(g, line, end);
+            int interval = g.interval(line);
+
+            List<int[]> next = new ArrayList<>();
+            List<int[]> cur = layers.get(i);
+            for (int si = 0; si < cur.size(); si++) {
+                int[] state = cur.get(si);
+                int board = state[0];
+                for (int j = tt.sharedStart(e); j < tt.sharedEnd(e); j++) {
+                    int alight = tt.sharedPosFrom(j);
+                    if (alight == board || reachesEnd(endPositions, board, alight)) continue;
+
+                    int cost = state[1] + Math.abs(alight - board) * interval + CompactGraph.TRANSFER_PENALTY;
+                    relax(next, tt.sharedPosTo(j), cost, si, tt.sharedStop(j));
+                }
+            }
+            if (next.isEmpty()) return null;
+            layers.add(next);
+        }
+
+        // 最后一段：从上车位置坐到终点
+        int lastLine = lines[m - 1];
+        int[] endPositions = positionsOf(g, lastLine, end);
+        int interval = g.interval(lastLine);
+        int bestCost = INF;
+        int bestState = -1;
+        List<int[]> last = layers.get(m - 1);
+        for (int si = 0; si < last.size(); si++) {
+            int[] state = last.get(si);
+            for (int p : endPositions) {
+                if (p == state[0]) continue;
+                int cost = state[1] + Math.abs(p - state[0]) * interval;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestState = si;
+                }
+            }
+        }
+        if (bestState < 0) return null;
+
+        // 回溯换乘站
+        Integer[] points = new Integer[m + 1];
+        points[m] = endSid;
+        int si = bestState;
+        for (int i = m - 1; i >= 0; i--) {
+            int[] state = layers.get(i).get(si);
+            points[i] = g.stationId(state[3]);
+            si = state[2];
+        }
+        return List.of(points);
+    }
+
+    // 同一上车位置只保留耗时最短的状态
+    private static void relax(List<int[]> states, int pos, int cost, int parent, int stop) {
+        for (int[] s : states) {
+            if (s[0] == pos) {
+                if (cost < s[1]) {
+                    s[1] = cost;
+                    s[2] = parent;
+                    s[3] = stop;
+                }
+                return;
+            }
+        }
+        states.add(new int[]{pos, cost, parent, stop});
+    }
+
+    // 从 board 驶向 alight 的方向上是否经过或即将到达终点
+    private static boolean reachesEnd(int[] endPositions, int board, int alight) {
+        int dir = Integer.signum(alight - board);
+        for (int p : endPositions) {
+            if ((p - board) * dir > 0) return true;
+        }
+        return false;
+    }
+
+    private static int[] positionsOf(CompactGraph g, int line, int stop) {
+        int first = g.positionOf(line, stop);
+        if (first < 0) return new int[0];
+        int last = g.lastPositionOf(line, stop);
+        return first == last ? new int[]{first} : new int[]{first, last};
+    }
+}
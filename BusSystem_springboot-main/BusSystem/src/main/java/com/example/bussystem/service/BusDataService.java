@@ -3,19 +3,24 @@ package com.example.bussystem.service;
 import com.example.bussystem.entity.LineStation;
 import com.example.bussystem.entity.Road;
 import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.NetworkSnapshot;
 import com.example.bussystem.repository.LineStationRepository;
 import com.example.bussystem.repository.RoadRepository;
 import com.example.bussystem.repository.StationRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.sql.Time;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class BusDataService {
@@ -27,11 +32,30 @@ public class BusDataService {
     // 注入路径计算服务，用于在数据变更后刷新图结构缓存
     @Autowired private PathFindingService pathFindingService;
 
+    // 记录地理编码接口的调用耗时
+    @Autowired private MeterRegistry meterRegistry;
+
+    // 共享的地理编码客户端（连接复用、带超时），见 HttpClientConfig
+    @Autowired private RestTemplate geocodingRestTemplate;
+
+    // 同时进行的地理编码请求数上限，外部接口变慢时最多占住这么多请求线程
+    private final Semaphore geocodingPermits;
+    // 等待空闲名额的最长时间(毫秒)，超时则本次不获取坐标
+    private final long geocodingAcquireTimeoutMillis;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     // TODO: 请替换为你申请的百度地图开放平台 Server端 AK
     private static final String BAIDU_AK = "YOUR_BAIDU_AK_HERE";
     // 根据提供的SQL文件，默认城市设定为长沙市
     private static final String DEFAULT_CITY = "长沙市";
 
+    public BusDataService(@Value("${bus.geocoding.max-concurrent:4}") int maxConcurrent,
+                          @Value("${bus.geocoding.acquire-timeout-ms:500}") long acquireTimeoutMillis) {
+        this.geocodingPermits = new Semaphore(Math.max(maxConcurrent, 1));
+        this.geocodingAcquireTimeoutMillis = Math.max(acquireTimeoutMillis, 0);
+    }
+
     // ==========================================
     //               站点管理业务
     // ==========================================
@@ -39,10 +63,12 @@ public class BusDataService {
     /**
      * 搜索站点
      * 逻辑：优先尝试按 ID 精确查询；若不是数字或 ID 不存在，则按名称模糊查询
+     * 直接查询内存中的路网快照（与数据库保持同步），名称匹配走站名索引
      */
     public List<Station> searchStations(String keyword) {
+        NetworkSnapshot snap = pathFindingService.getSnapshot();
         if (keyword == null || keyword.trim().isEmpty()) {
-            return stationRepo.findAll();
+            return new ArrayList<>(snap.getStationMap().values());
         }
 
         List<Station> results = new ArrayList<>();
@@ -50,17 +76,14 @@ public class BusDataService {
         // 1. 尝试解析为数字 ID 进行查询
         try {
             Integer id = Integer.valueOf(keyword);
-            stationRepo.findById(id).ifPresent(results::add);
+            Station s = snap.getStationMap().get(id);
+            if (s != null) results.add(s);
         } catch (NumberFormatException ignored) {}
 
-        // 2. 如果按 ID 没查到，则扫描所有站点进行名称模糊匹配
-        // (注：生产环境数据量大时，建议使用 Repository 的 findByNameContaining)
+        // 2. 如果按 ID 没查到，则按名称匹配（完全 > 前缀 > 包含）
         if (results.isEmpty()) {
-            List<Station> all = stationRepo.findAll();
-            for (Station s : all) {
-                if (s.getStationName().contains(keyword)) {
-                    results.add(s);
-                }
+            for (Integer sid : snap.getStationNameIndex().search(keyword, Integer.MAX_VALUE)) {
+                results.add(snap.getStationMap().get(sid));
             }
         }
         return results;
@@ -75,12 +98,12 @@ public class BusDataService {
         s.setStationId(id);
         s.setStationName(name);
 
-        // 自动获取经纬度信息（百度API -> 随机兜底）
-        autoFillCoordinates(s);
+        // 自动获取经纬度信息（百度API -> 随机兜底）；地理编码繁忙时坐标留空
+        boolean located = autoFillCoordinates(s);
 
         stationRepo.save(s);
-        pathFindingService.loadData(); // 刷新缓存
-        return "成功：站点 " + name + " 已添加";
+        pathFindingService.applyStationSaved(s); // 增量刷新缓存
+        return "成功：站点 " + name + " 已添加" + (located ? "" : "（地理编码繁忙，坐标暂未填写）");
     }
 
     // 更新站点
@@ -91,12 +114,12 @@ public class BusDataService {
         Station s = stationRepo.findById(id).get();
         s.setStationName(name);
 
-        // 修改名称时重新计算经纬度（假设位置随名称变化）
-        autoFillCoordinates(s);
+        // 修改名称时重新计算经纬度（假设位置随名称变化）；地理编码繁忙时保留原坐标
+        boolean located = autoFillCoordinates(s);
 
         stationRepo.save(s);
-        pathFindingService.loadData(); // 刷新缓存
-        return "成功：站点 " + id + " 信息已更新";
+        pathFindingService.applyStationSaved(s); // 增量刷新缓存
+        return "成功：站点 " + id + " 信息已更新" + (located ? "" : "（地理编码繁忙，坐标未更新）");
     }
 
     // 删除站点（事务控制）
@@ -110,31 +133,48 @@ public class BusDataService {
         // 再删除站点本身
         stationRepo.deleteById(id);
 
-        pathFindingService.loadData(); // 刷新缓存
+        pathFindingService.applyStationDeleted(id); // 增量刷新缓存
         return "成功：站点及其关联线路记录已删除";
     }
 
     /**
      * 自动填充经纬度
      * 逻辑：优先调用百度地图 Geocoding API v3 获取真实坐标。
-     * 如果 API 调用失败（网络异常、配额超限等），则降级使用随机生成策略。
+     * 如果 API 调用失败（网络异常、超时、配额超限等），则降级使用随机生成策略。
+     * 同时进行的调用已达上限时最多等待 acquire-timeout-ms，仍无空闲名额则不调用也不写入坐标。
+     *
+     * @return 是否写入了坐标；地理编码繁忙时返回 false，站点原有坐标不变
      */
-    private void autoFillCoordinates(Station s) {
+    private boolean autoFillCoordinates(Station s) {
         boolean success = false;
         String address = s.getStationName();
 
-        // 1. 尝试调用百度 API
+        // 1. 尝试调用百度 API，耗时按结果(success / error / exception / throttled)记录到 bus.geocoding.requests
+        long begin = System.nanoTime();
+        String outcome = "exception";
+        boolean acquired;
+        try {
+            acquired = geocodingPermits.tryAcquire(geocodingAcquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            meterRegistry.timer("bus.geocoding.requests", "outcome", "throttled")
+                    .record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+            System.err.println("地理编码请求过多，本次不获取坐标: " + address);
+            return false;
+        }
+
         try {
             // 构建请求 URL
             String url = String.format("https://api.map.baidu.com/geocoding/v3/?address=%s&city=%s&output=json&ak=%s",
                     address, DEFAULT_CITY, BAIDU_AK);
 
-            RestTemplate restTemplate = new RestTemplate();
-            String responseBody = restTemplate.getForObject(url, String.class);
+            String responseBody = geocodingRestTemplate.getForObject(url, String.class);
 
             // 解析 JSON
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(responseBody);
+            JsonNode root = MAPPER.readTree(responseBody);
             int status = root.path("status").asInt();
 
             if (status == 0) {
@@ -146,21 +186,28 @@ public class BusDataService {
                 s.setLongitude(Math.round(lng * 1000000.0) / 1000000.0);
                 s.setLatitude(Math.round(lat * 1000000.0) / 1000000.0);
                 success = true;
+                outcome = "success";
                 System.out.println("百度地图API调用成功: " + address + " -> (" + lng + ", " + lat + ")");
             } else {
+                outcome = "error";
                 System.err.println("百度地图API返回错误: status=" + status + ", address=" + address);
             }
 
         } catch (Exception e) {
             System.err.println("百度地图API调用异常: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            geocodingPermits.release();
         }
+        meterRegistry.timer("bus.geocoding.requests", "outcome", outcome)
+                .record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
 
         // 2. 兜底方案：如果 API 获取失败，使用算法伪造坐标
         if (!success) {
             System.out.println("启用兜底方案生成随机坐标: " + address);
             fallbackRandomCoordinates(s);
         }
+        return true;
     }
 
     // 辅助方法：模拟自动获取经纬度 (兜底逻辑)
@@ -227,6 +274,7 @@ public class BusDataService {
         roadRepo.save(road);
 
         // 2. 保存线路与站点的关联序列 (LineStation表)
+        List<Integer> savedSequence = new ArrayList<>();
         int seq = 1;
         for (Integer sid : stationIds) {
             // 仅当站点存在时才建立关联
@@ -236,11 +284,12 @@ public class BusDataService {
                 ls.setStationId(sid);
                 ls.setSequenceNo(seq++);
                 lineStationRepo.save(ls);
+                savedSequence.add(sid);
             }
         }
 
-        // 3. 刷新图算法缓存
-        pathFindingService.loadData();
+        // 3. 增量刷新图算法缓存（只替换该线路的站点序列）
+        pathFindingService.applyLineSaved(road, savedSequence);
     }
 
     // 删除线路（事务控制）
@@ -253,7 +302,13 @@ public class BusDataService {
         lineStationRepo.deleteByLineOrder(lineOrder);
         roadRepo.deleteById(lineOrder);
 
-        pathFindingService.loadData(); // 刷新缓存
+        pathFindingService.applyLineDeleted(lineOrder); // 增量刷新缓存
         return "成功：线路已删除";
     }
+
+    // 全量重建图缓存（兜底手段：直接改库或怀疑内存与数据库不一致时使用）
+    public String reloadGraph() {
+        pathFindingService.loadData();
+        return "成功：路网数据已从数据库重新加载";
+    }
 }
\ No newline at end of file
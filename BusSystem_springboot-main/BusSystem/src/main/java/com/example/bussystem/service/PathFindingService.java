@@ -2,23 +2,53 @@ package com.example.bussystem.service;
 
 import com.example.bussystem.dto.RouteResultDTO;
 import com.example.bussystem.dto.SegmentDTO;
-import com.example.bussystem.entity.LineStation;
 import com.example.bussystem.entity.Road;
 import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.CompactGraph;
+import com.example.bussystem.graph.FootpathTable;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.graph.StationSpatialIndex;
+import com.example.bussystem.graph.Timetable;
+import com.example.bussystem.graph.TransferMatrix;
+import com.example.bussystem.graph.TransferTable;
+import com.example.bussystem.planner.BidirectionalLineSearch;
+import com.example.bussystem.planner.CsaPlanner;
+import com.example.bussystem.planner.LongHashSet;
+import com.example.bussystem.planner.ParetoSet;
+import com.example.bussystem.planner.RaptorPlanner;
+import com.example.bussystem.planner.RequestCoalescer;
+import com.example.bussystem.planner.RouteCandidate;
+import com.example.bussystem.planner.RoutePlan;
+import com.example.bussystem.planner.RoutePlanCache;
+import com.example.bussystem.planner.SearchBudget;
+import com.example.bussystem.planner.TransferPointSelector;
 import com.example.bussystem.repository.LineStationRepository;
 import com.example.bussystem.repository.RoadRepository;
 import com.example.bussystem.repository.StationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
  * 核心算法服务
  * 负责路径规划（直达+换乘）及数据缓存
  */
+@Slf4j
 @Service
 public class PathFindingService {
 
@@ -26,332 +56,910 @@ public class PathFindingService {
     @Autowired private RoadRepository roadRepo;
     @Autowired private LineStationRepository lineStationRepo;
 
+    // 换乘搜索引擎：raptor(按轮次扫描，默认) / bfs(旧版线路序列 BFS，保留作对照)
+    //   / csa(连接扫描，仅用于带出发时刻的查询，其余查询按 raptor 处理)
+    @Value("${bus.planner.engine:raptor}")
+    private String engine = "raptor";
+
+    // bfs 引擎是否改用双向搜索（从起点、终点线路同时展开，在中间拼接），结果与单向搜索一致
+    @Value("${bus.planner.bidirectional:false}")
+    private boolean bidirectional = false;
+
+    // 按坐标规划时，出发点/目的地周围可步行前往的站点范围(米)
+    @Value("${bus.planner.walk-radius:500}")
+    private int walkRadius = 500;
+
+    // 相距不超过该距离(米)的两个站点之间允许步行换乘，0 表示只允许同站换乘
+    @Value("${bus.planner.transfer-walk-radius:200}")
+    private int transferWalkRadius = FootpathTable.DEFAULT_RADIUS;
+
+    // 起点线路不少于该数目时才并行展开，线路少的查询拆分反而更慢
+    @Value("${bus.planner.parallel-threshold:8}")
+    private int parallelThreshold = 8;
+
+    // bfs 引擎按起点线路并行展开的线程池（有界），为 null 表示不并行
+    private volatile ForkJoinPool parallelPool;
+
+    // 单次查询允许的最大换乘次数，请求中更大的值按该值处理
+    @Value("${bus.planner.max-transfers:4}")
+    private int maxTransfersLimit = 4;
+
+    // 单次查询的搜索预算：展开状态数上限、时限(毫秒)，不大于 0 表示不限；用完后返回已找到的方案并标记为不完整
+    @Value("${bus.planner.budget.max-states:1000000}")
+    private long budgetMaxStates = 1_000_000;
+
+    @Value("${bus.planner.budget.timeout-ms:1000}")
+    private long budgetTimeoutMillis = 1000;
+
+    // 按坐标规划时每一端最多取的站点数（按距离由近到远）
+    private static final int MAX_LOCATION_SEEDS = 8;
+
+    // 热门起终点的规划结果缓存，容量为 0 时关闭；只接受基于当前快照算出的结果
+    private final RoutePlanCache planCache = new RoutePlanCache(1000, this::getSnapshot);
+    // 并发的相同规划请求只计算一次
+    private final RequestCoalescer<PlanKey, PlannedRoutes> planCoalescer = new RequestCoalescer<>();
+
+    // 合并请求的键：同一快照下的同一组查询参数
+    private record PlanKey(NetworkSnapshot snapshot, int startSid, int endSid, int maxTransfers) {}
+
+    // 合并请求共享的计算结果：紧凑方案 + 是否因预算用完而不完整；DTO 由每个请求各自生成
+    private record PlannedRoutes(List<RoutePlan> plans, boolean partial) {}
+
+    // 运行指标；容器注入 MeterRegistry 后替换，不在 Spring 容器中使用时（单元测试、基准测试）记录到本实例私有的注册表
+    private PlannerMetrics metrics = new PlannerMetrics(new SimpleMeterRegistry());
+
+    private final RaptorPlanner raptorPlanner = new RaptorPlanner();
+    private final CsaPlanner csaPlanner = new CsaPlanner();
+    private final TransferPointSelector transferPointSelector = new TransferPointSelector();
+    private final BidirectionalLineSearch bidirectionalLineSearch = new BidirectionalLineSearch();
+
+    // 后台构建快照的附属结构（最少换乘矩阵），不占用发布快照的线程
+    private final ExecutorService backgroundBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "snapshot-background");
+        t.setDaemon(true);
+        return t;
+    });
+
     // --- 内存缓存 ---
-    private Map<Integer, Station> stationMap = new HashMap<>();
-    private Map<Integer, Road> roadMap = new HashMap<>();
-    // 线路ID -> 站点ID有序列表
-    private Map<Integer, List<Integer>> lineToStationsMap = new HashMap<>();
-    // 站点ID -> 经过该站点的线路ID集合
-    private Map<Integer, Set<Integer>> stationToLinesMap = new HashMap<>();
+    // 当前生效的路网快照，重建时在旁路构建新快照，完成后一次性替换
+    private final AtomicReference<NetworkSnapshot> snapshotRef = new AtomicReference<>(NetworkSnapshot.empty());
 
     /**
      * 初始化加载数据到内存
+     * synchronized 只用于串行化多个写者，查询线程读取快照时无需加锁
      */
     @PostConstruct
     public synchronized void loadData() {
-        stationMap.clear();
-        roadMap.clear();
-        lineToStationsMap.clear();
-        stationToLinesMap.clear();
-
-        // 1. 加载站点
-        List<Station> stations = stationRepo.findAll();
-        for (Station s : stations) {
-            stationMap.put(s.getStationId(), s);
-        }
+        long begin = System.nanoTime();
+        NetworkSnapshot snapshot = NetworkSnapshot.build(
+                stationRepo.findAll(), roadRepo.findAll(), lineStationRepo.findAll(), transferWalkRadius);
+        publish(snapshot);
+        metrics.snapshotBuilt("full", System.nanoTime() - begin);
+        log.info("路网数据已加载: 站点={}, 线路={}, 步行换乘={}", snapshot.getStationMap().size(),
+                snapshot.getRoadMap().size(), snapshot.getFootpathTable().count());
+    }
 
-        // 2. 加载线路基础信息
-        List<Road> roads = roadRepo.findAll();
-        for (Road r : roads) {
-            roadMap.put(r.getLineOrder(), r);
-            lineToStationsMap.put(r.getLineOrder(), new ArrayList<>());
+    /**
+     * 发布新的路网快照，正在执行的查询继续使用旧快照直至结束
+     */
+    public void publish(NetworkSnapshot snapshot) {
+        // 使用 CSA 引擎时在发布前构建好连接表，避免第一个查询承担构建耗时
+        if ("csa".equalsIgnoreCase(engine)) {
+            snapshot.getConnectionTable();
         }
+        snapshotRef.set(snapshot);
+        // 缓存条目自带快照校验，这里清空只是为了尽早释放旧快照；
+        // 必须先替换快照再清空，仍在旧快照上计算的请求随后放入时会被缓存拒绝
+        planCache.invalidateAll();
+
+        // 增量更新未涉及线路间换乘关系时，矩阵已从旧快照沿用
+        if (snapshot.getTransferMatrix() != null) return;
+        // 最少换乘矩阵在后台构建，完成前的查询照常进行，只是不做提前拒绝和剪枝
+        backgroundBuilder.execute(() -> {
+            long begin = System.nanoTime();
+            TransferMatrix matrix = snapshot.buildTransferMatrix();
+            long elapsed = System.nanoTime() - begin;
+            // 耗时记入 bus.snapshot.matrix.build 计时器
+            metrics.matrixBuilt(elapsed);
+            log.info("最少换乘矩阵已构建: 线路={}, 耗时={}ms", matrix.lineCount(), elapsed / 1_000_000);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backgroundBuilder.shutdownNow();
+        ForkJoinPool pool = parallelPool;
+        if (pool != null) pool.shutdownNow();
+    }
 
-        // 3. 加载线路-站点关系 (按顺序)
-        List<LineStation> relations = lineStationRepo.findAll();
-        relations.sort(Comparator.comparingInt(LineStation::getLineOrder)
-                .thenComparingInt(LineStation::getSequenceNo));
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry registry) {
+        PlannerMetrics bound = new PlannerMetrics(registry);
+        bound.bindTo(this);
+        metrics = bound;
+    }
 
-        for (LineStation ls : relations) {
-            Integer lid = ls.getLineOrder();
-            Integer sid = ls.getStationId();
+    @Value("${bus.planner.cache-size:1000}")
+    public void setPlanCacheSize(int size) {
+        planCache.setCapacity(size);
+    }
 
-            if (lineToStationsMap.containsKey(lid)) {
-                lineToStationsMap.get(lid).add(sid);
-            }
-            stationToLinesMap.computeIfAbsent(sid, k -> new HashSet<>()).add(lid);
-        }
+    /**
+     * bfs 引擎按起点线路并行展开所用的线程数，0 表示关闭并行
+     */
+    @Value("${bus.planner.parallelism:0}")
+    public synchronized void setParallelism(int threads) {
+        ForkJoinPool old = parallelPool;
+        parallelPool = threads > 0 ? new ForkJoinPool(threads) : null;
+        if (old != null) old.shutdown();
+    }
+
+    public RoutePlanCache getPlanCache() {
+        return planCache;
+    }
+
+    public RequestCoalescer<?, ?> getPlanCoalescer() {
+        return planCoalescer;
+    }
+
+    // --- 增量更新 ---
+    // 管理端单条数据变更时只修补受影响的邻接关系，不再全表扫描；
+    // 若怀疑内存与数据库不一致，仍可调用 loadData() 全量重建
 
-        System.out.println("PathFindingService 数据已加载: 站点=" + stationMap.size() + ", 线路=" + roadMap.size());
+    /**
+     * 站点新增或修改（名称/坐标）
+     */
+    public synchronized void applyStationSaved(Station station) {
+        publishIncremental(snap -> snap.withStation(station));
+    }
+
+    /**
+     * 站点删除，同时从经过它的线路序列中移除
+     */
+    public synchronized void applyStationDeleted(Integer sid) {
+        publishIncremental(snap -> snap.withoutStation(sid));
+    }
+
+    /**
+     * 线路新增或站点序列整体替换
+     */
+    public synchronized void applyLineSaved(Road road, List<Integer> stationIds) {
+        publishIncremental(snap -> snap.withLine(road, stationIds));
+    }
+
+    /**
+     * 线路删除
+     */
+    public synchronized void applyLineDeleted(Integer lineOrder) {
+        publishIncremental(snap -> snap.withoutLine(lineOrder));
+    }
+
+    private void publishIncremental(UnaryOperator<NetworkSnapshot> change) {
+        long begin = System.nanoTime();
+        publish(change.apply(getSnapshot()));
+        metrics.snapshotBuilt("incremental", System.nanoTime() - begin);
+    }
+
+    /**
+     * 获取当前路网快照，调用方应在一次请求内只获取一次并一直使用
+     */
+    public NetworkSnapshot getSnapshot() {
+        return snapshotRef.get();
     }
 
     /**
      * 核心路径规划入口
      */
     public List<RouteResultDTO> findRoutes(String startStr, String endStr, int maxTransfers) {
-        Integer startSid = parseStationId(startStr);
-        Integer endSid = parseStationId(endStr);
+        return findRoutes(startStr, endStr, maxTransfers, null);
+    }
+
+    /**
+     * @param departAt 出发时刻，不为空时按实际班次（首末班、发车间隔、换乘等车）规划
+     */
+    public List<RouteResultDTO> findRoutes(String startStr, String endStr, int maxTransfers, LocalTime departAt) {
+        long begin = System.nanoTime();
+        List<RouteResultDTO> routes = planByStation(startStr, endStr, clampTransfers(maxTransfers), departAt);
+        metrics.planned(departAt != null ? "timed" : "station", departAt != null ? timedEngine() : staticEngine(),
+                !routes.isEmpty(), System.nanoTime() - begin);
+        return routes;
+    }
+
+    private List<RouteResultDTO> planByStation(String startStr, String endStr, int maxTransfers, LocalTime departAt) {
+        NetworkSnapshot snap = getSnapshot();
+        Integer startSid = parseStationId(snap, startStr);
+        Integer endSid = parseStationId(snap, endStr);
 
         // 基本校验
         if (startSid == null || endSid == null) return Collections.emptyList();
         if (startSid.equals(endSid)) return Collections.emptyList();
+        // 换乘次数上限内不可能到达，直接返回，不必搜索
+        if (exceedsTransferBudget(snap, startSid, endSid, maxTransfers)) {
+            metrics.rejected();
+            return Collections.emptyList();
+        }
 
-        List<RouteResultDTO> candidates = new ArrayList<>();
+        // 出发时刻各不相同，命中率很低，按时刻表的查询不进缓存
+        if (departAt != null) {
+            return computeTimedRoutes(snap, startSid, endSid, maxTransfers,
+                    departAt.getHour() * 60 + departAt.getMinute(), timedEngine(), newBudget());
+        }
 
-        // 1. 搜索直达方案 (0次换乘)
-        findDirectRoutes(startSid, endSid, candidates);
+        // 缓存和合并请求之间共享的都是紧凑方案，返回给调用方的 DTO 每次重新生成，互不影响
+        List<RoutePlan> cached = planCache.get(snap, startSid, endSid, maxTransfers);
+        if (cached != null) return toRouteResults(snap, cached, false);
+
+        // 未命中时，同一时刻的相同查询只由一个线程计算，其余线程直接共享结果
+        PlannedRoutes planned = planCoalescer.execute(new PlanKey(snap, startSid, endSid, maxTransfers), () -> {
+            String used = staticEngine();
+            SearchBudget budget = newBudget();
+            List<RoutePlan> plans = List.copyOf(planStaticRoutes(snap, startSid, endSid, maxTransfers, used, budget));
+            boolean partial = partial(budget, used);
+            // 提前结束的结果不完整，不缓存，下次查询重新计算
+            if (!partial) planCache.put(snap, startSid, endSid, maxTransfers, plans);
+            return new PlannedRoutes(plans, partial);
+        });
+        return toRouteResults(snap, planned.plans(), planned.partial());
+    }
 
-        // 2. 搜索换乘方案 (如果允许)
-        if (maxTransfers >= 1) {
-            findTransferRoutes(startSid, endSid, maxTransfers, candidates);
+    /**
+     * 按坐标规划：出发点、目的地步行范围内的站点都作为候选上下车站，步行时间计入总耗时
+     * 步行范围内没有站点时，退而使用最近的一个站点
+     */
+    public List<RouteResultDTO> findRoutesByLocation(double fromLat, double fromLng,
+                                                     double toLat, double toLng, int maxTransfers) {
+        long begin = System.nanoTime();
+        List<RouteResultDTO> routes = planByLocation(fromLat, fromLng, toLat, toLng, clampTransfers(maxTransfers));
+        metrics.planned("location", staticEngine(), !routes.isEmpty(), System.nanoTime() - begin);
+        return routes;
+    }
+
+    private List<RouteResultDTO> planByLocation(double fromLat, double fromLng,
+                                                double toLat, double toLng, int maxTransfers) {
+        NetworkSnapshot snap = getSnapshot();
+        StationSpatialIndex spatial = snap.getStationSpatialIndex();
+        List<StationSpatialIndex.Neighbor> origins = seedsAround(spatial, fromLat, fromLng);
+        List<StationSpatialIndex.Neighbor> destinations = seedsAround(spatial, toLat, toLng);
+        if (origins.isEmpty() || destinations.isEmpty()) return Collections.emptyList();
+
+        String used = staticEngine();
+        SearchBudget budget = newBudget();
+        List<RoutePlan> candidates = new ArrayList<>();
+        if ("bfs".equals(used)) {
+            // 旧引擎只支持单一起终点，逐对计算，所有起终点对共用一个预算
+            for (StationSpatialIndex.Neighbor o : origins) {
+                for (StationSpatialIndex.Neighbor d : destinations) {
+                    if (budget.isExhausted()) break;
+                    if (o.stationId() == d.stationId()) continue;
+                    if (exceedsTransferBudget(snap, o.stationId(), d.stationId(), maxTransfers)) continue;
+                    for (RoutePlan plan : planRoutes(snap, o.stationId(), d.stationId(), maxTransfers, used, budget)) {
+                        candidates.add(withWalk(plan, o.meters(), d.meters()));
+                    }
+                }
+            }
+        } else {
+            // 所有起点站一次性作为第 0 轮的出发标签，每个终点站搜索一次
+            CompactGraph g = snap.getCompactGraph();
+            Map<Integer, Double> originMeters = new HashMap<>();
+            int[] startStops = new int[origins.size()];
+            int[] startTimes = new int[origins.size()];
+            int n = 0;
+            for (StationSpatialIndex.Neighbor o : origins) {
+                int stop = g.stopIndexOf(o.stationId());
+                if (stop < 0) continue;
+                originMeters.put(o.stationId(), o.meters());
+                startStops[n] = stop;
+                startTimes[n++] = StationSpatialIndex.walkMinutes(o.meters());
+            }
+            startStops = Arrays.copyOf(startStops, n);
+            startTimes = Arrays.copyOf(startTimes, n);
+
+            for (StationSpatialIndex.Neighbor d : destinations) {
+                for (RouteCandidate c : raptorPlanner.search(g, snap.getFootpathTable(), null, startStops, startTimes,
+                        d.stationId(), Math.max(maxTransfers, 0), snap.getTransferMatrix(), budget)) {
+                    RoutePlan plan = createRoute(snap, c, null);
+                    if (plan == null) continue;
+                    candidates.add(withWalk(plan, originMeters.get(c.getTransferPoints().get(0)), d.meters()));
+                }
+            }
         }
+        metrics.candidates(used, candidates.size());
+        return toRouteResults(snap, deduplicate(candidates), partial(budget, used));
+    }
+
+    private List<StationSpatialIndex.Neighbor> seedsAround(StationSpatialIndex spatial, double lat, double lng) {
+        List<StationSpatialIndex.Neighbor> seeds = spatial.withinRadius(lat, lng, walkRadius);
+        if (seeds.isEmpty()) return spatial.nearest(lat, lng, 1);
+        return seeds.size() > MAX_LOCATION_SEEDS ? seeds.subList(0, MAX_LOCATION_SEEDS) : seeds;
+    }
 
-        // 去重并排序返回
+    // 在乘车方案前后补上步行距离和步行时间，返回新方案
+    private RoutePlan withWalk(RoutePlan plan, double startMeters, double endMeters) {
+        return plan.withWalk((int) Math.round(startMeters), (int) Math.round(endMeters),
+                StationSpatialIndex.walkMinutes(startMeters) + StationSpatialIndex.walkMinutes(endMeters));
+    }
+
+    private List<RouteResultDTO> computeTimedRoutes(NetworkSnapshot snap, Integer startSid, Integer endSid,
+                                                    int maxTransfers, int departAt, String engine,
+                                                    SearchBudget budget) {
+        List<RouteCandidate> found;
+        if ("csa".equalsIgnoreCase(engine)) {
+            found = csaPlanner.search(snap.getCompactGraph(), snap.getConnectionTable(), snap.getFootpathTable(),
+                    startSid, departAt, endSid, Math.max(maxTransfers, 0), snap.getTransferMatrix(), budget);
+        } else {
+            found = raptorPlanner.search(snap.getCompactGraph(), snap.getFootpathTable(), snap.getTimetable(),
+                    startSid, departAt, endSid, Math.max(maxTransfers, 0), snap.getTransferMatrix(), budget);
+        }
+        List<RoutePlan> candidates = new ArrayList<>();
+        for (RouteCandidate c : found) {
+            RoutePlan plan = createRoute(snap, c, departAt);
+            if (plan != null) candidates.add(plan);
+        }
+        metrics.candidates(engine, candidates.size());
+        return toRouteResults(snap, deduplicate(candidates), partial(budget, engine));
+    }
+
+    // 静态规划去重后的最终方案（紧凑形式）
+    private List<RoutePlan> planStaticRoutes(NetworkSnapshot snap, Integer startSid, Integer endSid,
+                                             int maxTransfers, String engine, SearchBudget budget) {
+        List<RoutePlan> candidates = planRoutes(snap, startSid, endSid, maxTransfers, engine, budget);
+        metrics.candidates(engine, candidates.size());
         return deduplicate(candidates);
     }
 
+    // 静态规划的全部候选，均为紧凑形式
+    private List<RoutePlan> planRoutes(NetworkSnapshot snap, Integer startSid, Integer endSid,
+                                       int maxTransfers, String engine, SearchBudget budget) {
+        List<RoutePlan> candidates = new ArrayList<>();
+
+        if ("bfs".equalsIgnoreCase(engine)) {
+            // 1. 搜索直达方案 (0次换乘)
+            findDirectRoutes(snap, startSid, endSid, candidates);
+
+            // 2. 搜索换乘方案 (如果允许)
+            if (maxTransfers >= 1) {
+                if (bidirectional) {
+                    findTransferRoutesBidirectional(snap, startSid, endSid, maxTransfers, budget, candidates);
+                } else {
+                    findTransferRoutes(snap, startSid, endSid, maxTransfers, budget, candidates);
+                }
+            }
+        } else {
+            // 按轮次搜索：第 1 轮即直达方案，之后每轮多一次换乘
+            // 步行换乘只在该引擎中生效
+            for (RouteCandidate c : raptorPlanner.search(snap.getCompactGraph(), snap.getFootpathTable(),
+                    startSid, endSid, Math.max(maxTransfers, 0), snap.getTransferMatrix(), budget)) {
+                RoutePlan plan = createRoute(snap, c, null);
+                if (plan != null) candidates.add(plan);
+            }
+        }
+        return candidates;
+    }
+
     // --- 内部算法实现 ---
 
-    private void findDirectRoutes(Integer start, Integer end, List<RouteResultDTO> results) {
-        Set<Integer> startLines = stationToLinesMap.getOrDefault(start, Collections.emptySet());
+    private void findDirectRoutes(NetworkSnapshot snap, Integer start, Integer end, List<RoutePlan> results) {
+        CompactGraph g = snap.getCompactGraph();
+        int endStop = g.stopIndexOf(end);
+        Set<Integer> startLines = snap.getStationToLinesMap().getOrDefault(start, Collections.emptySet());
         for (Integer lid : startLines) {
-            List<Integer> seq = lineToStationsMap.get(lid);
             // 如果该线路同时也包含终点
-            if (seq.contains(end)) {
+            if (endStop >= 0 && g.positionOf(g.lineIndexOf(lid), endStop) >= 0) {
                 // 构建路径：仅包含这一条线路
-                RouteResultDTO route = createRoute(Collections.singletonList(lid), Arrays.asList(start, end));
-                if (route != null) results.add(route);
+                RoutePlan plan = createRoute(snap, new RouteCandidate(Collections.singletonList(lid), Arrays.asList(start, end)), null);
+                if (plan != null) results.add(plan);
             }
         }
     }
 
-    private void findTransferRoutes(Integer start, Integer end, int maxTransfers, List<RouteResultDTO> results) {
-        Set<Integer> startLines = stationToLinesMap.getOrDefault(start, Collections.emptySet());
-        Set<Integer> endLines = stationToLinesMap.getOrDefault(end, Collections.emptySet());
+    private void findTransferRoutes(NetworkSnapshot snap, Integer start, Integer end, int maxTransfers,
+                                    SearchBudget budget, List<RoutePlan> results) {
+        Set<Integer> startLines = snap.getStationToLinesMap().getOrDefault(start, Collections.emptySet());
+        Set<Integer> endLines = snap.getStationToLinesMap().getOrDefault(end, Collections.emptySet());
+        CompactGraph g = snap.getCompactGraph();
 
         // 限制递归深度：线路数量 = 换乘次数 + 1
         int maxLines = maxTransfers + 1;
+        // 各线路到终点线路的最少换乘次数，剩余次数不够的序列不再展开
+        int[] toEnd = transfersToEnd(snap, end);
 
-        // Queue 中存储的是线路ID的序列
-        Queue<List<Integer>> queue = new LinkedList<>();
+        List<Integer> seeds = new ArrayList<>();
         for (Integer sl : startLines) {
-            List<Integer> path = new ArrayList<>();
-            path.add(sl);
-            queue.add(path);
+            int l = g.lineIndexOf(sl);
+            if (toEnd != null && l >= 0 && 1 + toEnd[l] > maxLines) continue;
+            seeds.add(sl);
+        }
+
+        // 逐层展开：所有起点线路的第 k 层都展开完，才进入第 k+1 层，方案顺序与所有起点线路共用一个 BFS 队列时一致。
+        // 预算有限时先被舍弃的是更深的层，每条起点线路的少换乘方案都会先找到
+        List<List<List<Integer>>> frontiers = new ArrayList<>(seeds.size());
+        for (Integer sl : seeds) frontiers.add(List.of(List.of(sl)));
+        // 同一层内各起点线路的展开互不依赖：线路多时分给并行池，少时直接在当前线程完成
+        ForkJoinPool pool = parallelPool;
+        boolean parallel = pool != null && seeds.size() >= parallelThreshold;
+        int peak = seeds.size();
+        for (int size = 1; size < maxLines && !budget.isExhausted(); size++) {
+            List<LevelExpansion> level = new ArrayList<>(frontiers.size());
+            if (parallel) {
+                List<ForkJoinTask<LevelExpansion>> tasks = new ArrayList<>(frontiers.size());
+                for (List<List<Integer>> frontier : frontiers) {
+                    tasks.add(pool.submit(() -> expandLevel(snap, frontier, start, end, endLines, maxLines, toEnd, budget)));
+                }
+                for (ForkJoinTask<LevelExpansion> task : tasks) level.add(task.join());
+            } else {
+                for (List<List<Integer>> frontier : frontiers) {
+                    level.add(expandLevel(snap, frontier, start, end, endLines, maxLines, toEnd, budget));
+                }
+            }
+            int width = 0;
+            for (int i = 0; i < level.size(); i++) {
+                results.addAll(level.get(i).routes());
+                frontiers.set(i, level.get(i).next());
+                width += level.get(i).next().size();
+            }
+            peak = Math.max(peak, width);
         }
+        metrics.bfsQueuePeak(peak);
+    }
+
+    // 一条起点线路在某一层的展开结果：到达终点线路生成的方案，以及进入下一层的线路序列
+    private record LevelExpansion(List<List<Integer>> next, List<RoutePlan> routes) {}
 
-        while (!queue.isEmpty()) {
-            List<Integer> path = queue.poll();
-            if (path.size() >= maxLines) continue;
+    // 把一条起点线路当前层的线路序列各向外接一条线路
+    private LevelExpansion expandLevel(NetworkSnapshot snap, List<List<Integer>> frontier, Integer start, Integer end,
+                                       Set<Integer> endLines, int maxLines, int[] toEnd, SearchBudget budget) {
+        CompactGraph g = snap.getCompactGraph();
+        TransferTable tt = snap.getTransferTable();
+        List<List<Integer>> next = new ArrayList<>();
+        List<RoutePlan> routes = new ArrayList<>();
 
+        for (List<Integer> path : frontier) {
             Integer lastLineId = path.get(path.size() - 1);
-            List<Integer> lastLineStations = lineToStationsMap.get(lastLineId);
 
-            Set<Integer> nextLines = new HashSet<>();
-            for (Integer sid : lastLineStations) {
-                Set<Integer> linesAtStation = stationToLinesMap.getOrDefault(sid, Collections.emptySet());
-                nextLines.addAll(linesAtStation);
-            }
+            // 可换乘线路直接取自换乘表，不再逐站合并集合
+            int lastLine = g.lineIndexOf(lastLineId);
+            if (lastLine < 0) continue;
 
-            for (Integer nextLineId : nextLines) {
+            for (int e = tt.pairsStart(lastLine); e < tt.pairsEnd(lastLine); e++) {
+                int nextLine = tt.pairLine(e);
+                if (toEnd != null && path.size() + 1 + toEnd[nextLine] > maxLines) continue;
+                Integer nextLineId = g.lineId(nextLine);
                 if (path.contains(nextLineId)) continue;
+                // 每生成一条新的线路序列计一次，预算用完后停止展开，已找到的方案照常返回
+                if (!budget.spend(1)) return new LevelExpansion(next, routes);
 
                 List<Integer> newPath = new ArrayList<>(path);
                 newPath.add(nextLineId);
 
                 if (endLines.contains(nextLineId)) {
-                    buildAndAddRoutes(newPath, start, end, results);
-                } else {
-                    if (newPath.size() < maxLines) {
-                        queue.add(newPath);
-                    }
+                    buildAndAddRoutes(snap, newPath, start, end, routes);
+                } else if (newPath.size() < maxLines) {
+                    next.add(newPath);
                 }
             }
         }
+        return new LevelExpansion(next, routes);
     }
 
-    private void buildAndAddRoutes(List<Integer> linePath, Integer start, Integer end, List<RouteResultDTO> results) {
-        List<Integer> transferStations = new ArrayList<>();
-        transferStations.add(start);
+    /**
+     * 与 findTransferRoutes 枚举相同的线路序列，但从起点、终点两侧同时展开
+     */
+    private void findTransferRoutesBidirectional(NetworkSnapshot snap, Integer start, Integer end, int maxTransfers,
+                                                 SearchBudget budget, List<RoutePlan> results) {
+        CompactGraph g = snap.getCompactGraph();
+        Set<Integer> startLines = snap.getStationToLinesMap().getOrDefault(start, Collections.emptySet());
+        Set<Integer> endLines = snap.getStationToLinesMap().getOrDefault(end, Collections.emptySet());
+
+        // 起点线路保持与单向搜索相同的入队顺序
+        int[] starts = new int[startLines.size()];
+        int n = 0;
+        for (Integer sl : startLines) {
+            int l = g.lineIndexOf(sl);
+            if (l >= 0) starts[n++] = l;
+        }
+        boolean[] isEndLine = new boolean[g.lineCount()];
+        for (Integer el : endLines) {
+            int l = g.lineIndexOf(el);
+            if (l >= 0) isEndLine[l] = true;
+        }
+
+        for (int[] path : bidirectionalLineSearch.search(snap.getTransferTable(), Arrays.copyOf(starts, n),
+                isEndLine, maxTransfers + 1, transfersToEnd(snap, end), budget)) {
+            List<Integer> linePath = new ArrayList<>(path.length);
+            for (int l : path) linePath.add(g.lineId(l));
+            buildAndAddRoutes(snap, linePath, start, end, results);
+        }
+    }
 
-        for (int i = 0; i < linePath.size() - 1; i++) {
-            Integer l1 = linePath.get(i);
-            Integer l2 = linePath.get(i+1);
+    // 各线路到终点的最少换乘次数，最少换乘矩阵尚未构建完成时返回 null
+    private int[] transfersToEnd(NetworkSnapshot snap, Integer end) {
+        TransferMatrix matrix = snap.getTransferMatrix();
+        int endStop = snap.getCompactGraph().stopIndexOf(end);
+        if (matrix == null || endStop < 0) return null;
+        return matrix.transfersToStop(snap.getCompactGraph(), endStop);
+    }
 
-            Set<Integer> stations1 = new HashSet<>(lineToStationsMap.get(l1));
-            Set<Integer> stations2 = new HashSet<>(lineToStationsMap.get(l2));
+    // 不带出发时刻的查询实际使用的引擎：csa 只用于按时刻表规划，这类查询由 raptor 完成
+    private String staticEngine() {
+        String e = engine.toLowerCase(Locale.ROOT);
+        return "csa".equals(e) ? "raptor" : e;
+    }
 
-            stations1.retainAll(stations2); // 取交集
+    // 带出发时刻的查询实际使用的引擎：bfs 不支持时刻表，由 raptor 完成
+    private String timedEngine() {
+        return "csa".equalsIgnoreCase(engine) ? "csa" : "raptor";
+    }
 
-            if (stations1.isEmpty()) return;
+    private int clampTransfers(int maxTransfers) {
+        return Math.min(Math.max(maxTransfers, 0), maxTransfersLimit);
+    }
 
-            // 取第一个交点作为换乘站
-            transferStations.add(stations1.iterator().next());
-        }
-        transferStations.add(end);
+    private SearchBudget newBudget() {
+        return new SearchBudget(budgetMaxStates, budgetTimeoutMillis);
+    }
 
-        RouteResultDTO route = createRoute(linePath, transferStations);
-        if (route != null) results.add(route);
+    /**
+     * 起终点之间的最少换乘次数已超出上限（或根本不可达）时返回 true；矩阵尚未构建完成时不做判断
+     */
+    private boolean exceedsTransferBudget(NetworkSnapshot snap, Integer startSid, Integer endSid, int maxTransfers) {
+        TransferMatrix matrix = snap.getTransferMatrix();
+        if (matrix == null) return false;
+        CompactGraph g = snap.getCompactGraph();
+        int start = g.stopIndexOf(startSid);
+        int end = g.stopIndexOf(endSid);
+        if (start < 0 || end < 0) return false;
+        return matrix.minTransfers(g, start, end) > Math.max(maxTransfers, 0);
     }
 
-    private RouteResultDTO createRoute(List<Integer> lines, List<Integer> transferPoints) {
-        RouteResultDTO dto = new RouteResultDTO();
-        // dto.setTransfers(lines.size() - 1);
+    private void buildAndAddRoutes(NetworkSnapshot snap, List<Integer> linePath, Integer start, Integer end, List<RoutePlan> results) {
+        // 在每对相邻线路的公共站点中选出总耗时最短且合理的换乘站组合
+        List<Integer> transferStations = transferPointSelector.select(
+                snap.getCompactGraph(), snap.getTransferTable(), linePath, start, end);
+        if (transferStations == null) return;
+
+        RoutePlan plan = createRoute(snap, new RouteCandidate(linePath, transferStations), null);
+        if (plan != null) results.add(plan);
+    }
 
-        List<SegmentDTO> segments = new ArrayList<>();
+    /**
+     * 校验候选方案并转换为紧凑形式，不合理（多此一举、坐过站、已过末班车）时返回 null
+     * 此处只做整数运算，途经站点和站点详情留到 toRouteResult 中展开
+     *
+     * @param departAt 出发时刻（分钟），不为空时按时刻表推算每段的上车时刻和等车时间
+     */
+    private RoutePlan createRoute(NetworkSnapshot snap, RouteCandidate c, Integer departAt) {
+        List<Integer> lines = c.getLines();
+        List<Integer> transferPoints = c.getTransferPoints();
+        // 各段的下车站，与下一段上车站不同时表示步行换乘；为 null 表示全部同站换乘
+        List<Integer> alightPoints = c.getAlightPoints();
+        // 搜索引擎给出了确切的上下车位置时直接采用，它们在搜索中已遵守下面的换乘规则
+        boolean exact = c.getBoardPositions() != null;
+
+        int n = lines.size();
+        int[] segLines = new int[n];
+        int[] segFrom = new int[n];
+        int[] segTo = new int[n];
+        int[] segWalks = new int[n];
+        int[] boardTimes = departAt == null ? null : new int[n];
         int totalStops = 0;
         int totalDuration = 0;
+        int rideSegments = 0;
+        // 结构签名：线路名 + 经过的站点序列，与原先字符串签名的口径一致（同名的上下行线路也视为重复），
+        // 但只在已读取的整数上累积，不拼接字符串
+        long signature = 17;
+        // 按时刻表推算时的当前时刻
+        int clock = departAt == null ? 0 : departAt;
 
         // 获取最终的目的地ID
         Integer finalDestination = transferPoints.get(transferPoints.size() - 1);
+        CompactGraph g = snap.getCompactGraph();
+        int finalStop = g.stopIndexOf(finalDestination);
 
-        for (int i = 0; i < lines.size(); i++) {
+        for (int i = 0; i < n; i++) {
             Integer lid = lines.get(i);
             Integer from = transferPoints.get(i);
-            Integer to = transferPoints.get(i + 1);
-
-            List<Integer> fullSeq = lineToStationsMap.get(lid);
-            int idxFrom = fullSeq.indexOf(from);
-            int idxTo = fullSeq.indexOf(to);
-
-            if (idxFrom == -1 || idxTo == -1) return null;
+            Integer to = alightPoints == null ? transferPoints.get(i + 1) : alightPoints.get(i);
+
+            // 站点在线路上的位置直接查位置索引，不再对序列做 indexOf
+            int line = g.lineIndexOf(lid);
+            int fromStop = g.stopIndexOf(from);
+            int toStop = g.stopIndexOf(to);
+            if (line < 0 || fromStop < 0 || toStop < 0) return null;
+
+            int idxFrom;
+            int idxTo;
+            if (exact) {
+                idxFrom = c.getBoardPositions()[i];
+                idxTo = c.getAlightPositions()[i];
+            } else {
+                idxFrom = g.positionOf(line, fromStop);
+                idxTo = g.positionOf(line, toStop);
+
+                if (idxFrom == -1 || idxTo == -1) return null;
+
+                // 环线的首末站是同一站点，第一次出现的位置不一定最近，
+                // 这里在所有出现位置中取上下车距离最近的一对，避免绕行整圈
+                int lastFrom = g.lastPositionOf(line, fromStop);
+                int lastTo = g.lastPositionOf(line, toStop);
+                if (!from.equals(to) && (lastFrom != idxFrom || lastTo != idxTo)) {
+                    int[] froms = {idxFrom, lastFrom};
+                    int[] tos = {idxTo, lastTo};
+                    for (int f : froms) {
+                        for (int t : tos) {
+                            if (f != t && (idxFrom == idxTo || Math.abs(t - f) < Math.abs(idxTo - idxFrom))) {
+                                idxFrom = f;
+                                idxTo = t;
+                            }
+                        }
+                    }
+                }
+            }
 
             if (idxFrom == idxTo) {
                 continue;
             }
 
-            // ============================================================
-            // 拒绝“多此一举”的换乘
-            // 如果这不是最后一段路（即我们正准备在这里下车换乘），
-            // 但如果你不下的车，这辆车其实后面就能到终点，那你下车干嘛？-> 废弃
-            // ============================================================
-            if (i < lines.size() - 1) {
-                int idxFinal = fullSeq.indexOf(finalDestination);
-                if (idxFinal != -1) {
-                    // 判断终点是否在当前行驶方向的“前方”
-                    boolean canReachDirectly = false;
-                    if (idxFrom < idxTo) {
-                        // 正向行驶 (1->5)，终点在更后面 (10)，即 idxFinal > idxTo
-                        if (idxFinal > idxTo) canReachDirectly = true;
-                    } else {
-                        // 反向行驶 (5->1)，终点在更后面 (0)，即 idxFinal < idxTo
-                        if (idxFinal < idxTo) canReachDirectly = true;
+            if (!exact) {
+                // ============================================================
+                // 拒绝“多此一举”的换乘
+                // 如果这不是最后一段路（即我们正准备在这里下车换乘），
+                // 但如果你不下的车，这辆车其实后面就能到终点，那你下车干嘛？-> 废弃
+                // ============================================================
+                if (i < n - 1) {
+                    int idxFinal = finalStop < 0 ? -1 : g.positionOf(line, finalStop);
+                    if (idxFinal != -1) {
+                        // 判断终点是否在当前行驶方向的“前方”
+                        boolean canReachDirectly = false;
+                        if (idxFrom < idxTo) {
+                            // 正向行驶 (1->5)，终点在更后面 (10)，即 idxFinal > idxTo
+                            if (idxFinal > idxTo) canReachDirectly = true;
+                        } else {
+                            // 反向行驶 (5->1)，终点在更后面 (0)，即 idxFinal < idxTo
+                            if (idxFinal < idxTo) canReachDirectly = true;
+                        }
+
+                        if (canReachDirectly) {
+                            // 发现当前线路直达终点，却被安排了中途换乘，视为不合理，丢弃。
+                            return null;
+                        }
                     }
+                }
 
-                    if (canReachDirectly) {
-                        // 发现当前线路直达终点，却被安排了中途换乘，视为不合理，丢弃。
+                // ============================================================
+                // 检查是否“坐过站”或“多余换乘”
+                // 如果这一段路径中包含终点站，那么它必须是最后一段，且终点必须是这一段的最后一站。
+                // ============================================================
+                if (finalStop >= 0 && passes(g, line, idxFrom, idxTo, finalStop)) {
+                    boolean isLastSegment = (i == n - 1);
+                    // 如果包含终点，但不是最后一段，或者不是在这一段的末尾下车 -> 说明路过终点没下车 -> 废弃
+                    if (!isLastSegment || toStop != finalStop) {
                         return null;
                     }
                 }
+                // ============================================================
             }
-            // ============================================================
 
-            List<Integer> subList;
-            if (idxFrom <= idxTo) {
-                subList = new ArrayList<>(fullSeq.subList(idxFrom, idxTo + 1));
-            } else {
-                subList = new ArrayList<>(fullSeq.subList(idxTo, idxFrom + 1));
-                Collections.reverse(subList);
+            int interval = g.interval(line);
+            int stops = Math.abs(idxTo - idxFrom);
+            int segTime = stops * interval;
+
+            if (departAt != null) {
+                // 本方向上从始发站到上车站已行驶的站数，用来推算最早能赶上的一班车
+                int stepsFromTerminal = idxFrom < idxTo ? idxFrom : g.lineLength(line) - 1 - idxFrom;
+                int ready = clock + (rideSegments > 0 ? Timetable.MIN_TRANSFER_MINUTES : 0);
+                int departure = snap.getTimetable().nextDeparture(line, ready - stepsFromTerminal * interval);
+                if (departure == Timetable.NO_DEPARTURE) return null; // 已过末班车
+                int boardAt = departure + stepsFromTerminal * interval;
+                boardTimes[rideSegments] = boardAt;
+                clock = boardAt + segTime;
             }
 
-            // ============================================================
-            // 检查是否“坐过站”或“多余换乘”
-            // 如果这一段路径中包含终点站，那么它必须是最后一段，且终点必须是这一段的最后一站。
-            // ============================================================
-            if (subList.contains(finalDestination)) {
-                boolean isLastSegment = (i == lines.size() - 1);
-                Integer lastStationInSegment = subList.get(subList.size() - 1);
-
-                // 如果包含终点，但不是最后一段，或者不是在这一段的末尾下车 -> 说明路过终点没下车 -> 废弃
-                if (!isLastSegment || !lastStationInSegment.equals(finalDestination)) {
-                    return null;
-                }
+            segLines[rideSegments] = line;
+            segFrom[rideSegments] = idxFrom;
+            segTo[rideSegments] = idxTo;
+            segWalks[rideSegments] = -1;
+            totalStops += stops;
+            totalDuration += segTime;
+            signature = RoutePlan.mix(signature, g.lineNameKey(line));
+            for (int pos = idxFrom, dir = idxFrom < idxTo ? 1 : -1; pos != idxTo + dir; pos += dir) {
+                signature = RoutePlan.mix(signature, g.stopAt(line, pos));
+            }
+
+            // 步行换乘：从下车站步行到下一段的上车站
+            Integer nextBoard = transferPoints.get(i + 1);
+            if (!to.equals(nextBoard)) {
+                int walk = snap.getFootpathTable().find(toStop, g.stopIndexOf(nextBoard));
+                if (walk < 0) return null;
+                segWalks[rideSegments] = walk;
+                signature = RoutePlan.mix(signature, -1 - walk);
+                totalDuration += snap.getFootpathTable().minutes(walk);
+                clock += snap.getFootpathTable().minutes(walk);
+            }
+            rideSegments++;
+        }
+        if (rideSegments == 0) return null;
+
+        int duration;
+        if (departAt != null) {
+            // 实际耗时 = 到达时刻 - 出发时刻，已包含每次等车的时间
+            duration = clock - departAt;
+        } else {
+            // 换乘次数不算步行段
+            duration = totalDuration + (rideSegments - 1) * CompactGraph.TRANSFER_PENALTY;
+        }
+        return new RoutePlan(Arrays.copyOf(segLines, rideSegments), Arrays.copyOf(segFrom, rideSegments),
+                Arrays.copyOf(segTo, rideSegments), Arrays.copyOf(segWalks, rideSegments),
+                boardTimes == null ? null : Arrays.copyOf(boardTimes, rideSegments),
+                departAt == null ? -1 : departAt, totalStops, duration, signature);
+    }
+
+    // 线路在 [idxFrom, idxTo] 区间（含两端，任意方向）内是否经过站点 stop
+    private static boolean passes(CompactGraph g, int line, int idxFrom, int idxTo, int stop) {
+        for (int pos = Math.min(idxFrom, idxTo); pos <= Math.max(idxFrom, idxTo); pos++) {
+            if (g.stopAt(line, pos) == stop) return true;
+        }
+        return false;
+    }
+
+    // 预算用完时记录一次，返回结果是否不完整
+    private boolean partial(SearchBudget budget, String engine) {
+        if (!budget.isExhausted()) return false;
+        metrics.budgetExhausted(engine);
+        return true;
+    }
+
+    private List<RouteResultDTO> toRouteResults(NetworkSnapshot snap, List<RoutePlan> plans, boolean partial) {
+        List<RouteResultDTO> results = new ArrayList<>(plans.size());
+        for (RoutePlan plan : plans) {
+            RouteResultDTO dto = toRouteResult(snap, plan);
+            if (partial) dto.setPartial(true);
+            results.add(dto);
+        }
+        return results;
+    }
+
+    /**
+     * 把最终返回的紧凑方案展开为 RouteResultDTO：途经站点、站点详情、步行段和各段时刻
+     */
+    private RouteResultDTO toRouteResult(NetworkSnapshot snap, RoutePlan plan) {
+        CompactGraph g = snap.getCompactGraph();
+        FootpathTable footpaths = snap.getFootpathTable();
+        List<SegmentDTO> segments = new ArrayList<>(plan.segmentCount() * 2);
+        int clock = plan.getDepartAt();
+
+        for (int i = 0; i < plan.segmentCount(); i++) {
+            int line = plan.getLines()[i];
+            int idxFrom = plan.getFromIdx()[i];
+            int idxTo = plan.getToIdx()[i];
+            Integer lid = g.lineId(line);
+
+            // 按乘车方向直接从扁平数组取出途经站点
+            int step = idxFrom <= idxTo ? 1 : -1;
+            List<Integer> subList = new ArrayList<>(Math.abs(idxTo - idxFrom) + 1);
+            for (int pos = idxFrom; pos != idxTo + step; pos += step) {
+                subList.add(g.stationId(g.stopAt(line, pos)));
             }
-            // ============================================================
 
-            Road road = roadMap.get(lid);
+            Road road = snap.getRoadMap().get(lid);
             SegmentDTO seg = new SegmentDTO();
             seg.setLineOrder(lid);
             seg.setLineName(road.getLineName());
-            seg.setFromSid(from);
-            seg.setToSid(to);
+            seg.setFromSid(subList.get(0));
+            seg.setToSid(subList.get(subList.size() - 1));
             seg.setStations(subList);
             seg.setStopsCount(Math.abs(idxTo - idxFrom));
 
             // 填充 stationDetails 供前端地图绘制使用，让前端能画出折线和换乘点名
             List<Station> details = subList.stream()
-                    .map(sid -> stationMap.get(sid))
+                    .map(sid -> snap.getStationMap().get(sid))
                     .collect(Collectors.toList());
             seg.setStationDetails(details);
-
-            int interval = (road.getIntervalTime() != null && road.getIntervalTime() > 0) ? road.getIntervalTime() : 5;
-            int segTime = seg.getStopsCount() * interval;
-            seg.setSegmentDuration(segTime);
-
+            seg.setSegmentDuration(seg.getStopsCount() * g.interval(line));
+
+            if (plan.isTimed()) {
+                int boardAt = plan.getBoardTimes()[i];
+                seg.setWaitMinutes(boardAt - clock);
+                seg.setDepartureTime(Timetable.format(boardAt));
+                clock = boardAt + seg.getSegmentDuration();
+                seg.setArrivalTime(Timetable.format(clock));
+            }
             segments.add(seg);
-            totalStops += seg.getStopsCount();
-            totalDuration += segTime;
-        }
-        if (segments.isEmpty()) return null;
 
-        // 重新计算换乘次数
-        dto.setTransfers(segments.size() - 1);
+            // 步行换乘：从下车站步行到下一段的上车站
+            int walkEdge = plan.getWalks()[i];
+            if (walkEdge >= 0) {
+                Integer nextBoard = g.stationId(g.stopAt(plan.getLines()[i + 1], plan.getFromIdx()[i + 1]));
+                SegmentDTO walk = createWalkSegment(snap, seg.getToSid(), nextBoard, footpaths, walkEdge);
+                if (plan.isTimed()) {
+                    walk.setDepartureTime(Timetable.format(clock));
+                    clock += walk.getSegmentDuration();
+                    walk.setArrivalTime(Timetable.format(clock));
+                }
+                segments.add(walk);
+            }
+        }
 
-        int transferPenalty = dto.getTransfers() * 10;
-        dto.setDuration(totalDuration + transferPenalty);
+        RouteResultDTO dto = new RouteResultDTO();
+        dto.setTransfers(plan.getTransfers());
+        dto.setDuration(plan.getDuration());
+        if (plan.isTimed()) {
+            dto.setDepartureTime(Timetable.format(plan.getDepartAt()));
+            dto.setArrivalTime(Timetable.format(clock));
+        }
         dto.setSegments(segments);
-        dto.setTotalStops(totalStops);
+        dto.setTotalStops(plan.getTotalStops());
+        dto.setStartWalkMeters(plan.getStartWalkMeters());
+        dto.setEndWalkMeters(plan.getEndWalkMeters());
         dto.setRouteId(UUID.randomUUID().toString()); // 生成一个唯一ID
         return dto;
     }
 
+    private SegmentDTO createWalkSegment(NetworkSnapshot snap, Integer from, Integer to,
+                                         FootpathTable footpaths, int edge) {
+        SegmentDTO seg = new SegmentDTO();
+        seg.setLineName("步行");
+        seg.setFromSid(from);
+        seg.setToSid(to);
+        seg.setStations(Arrays.asList(from, to));
+        seg.setStationDetails(Arrays.asList(snap.getStationMap().get(from), snap.getStationMap().get(to)));
+        seg.setStopsCount(0);
+        seg.setSegmentDuration(footpaths.minutes(edge));
+        seg.setWalkDistance(footpaths.meters(edge));
+        return seg;
+    }
+
     public Integer parseStationId(String query) {
+        return parseStationId(getSnapshot(), query);
+    }
+
+    public Integer parseStationId(NetworkSnapshot snap, String query) {
         if (query == null) return null;
         if (query.matches("\\d+")) {
             Integer id = Integer.parseInt(query);
-            if (stationMap.containsKey(id)) return id;
-        }
-        for (Station s : stationMap.values()) {
-            if (s.getStationName().contains(query)) return s.getStationId();
+            if (snap.getStationMap().containsKey(id)) return id;
         }
-        return null;
+        // 名称匹配走索引：完全匹配 > 前缀匹配 > 包含匹配
+        return snap.getStationNameIndex().bestMatch(query);
     }
 
     /**
      * [逻辑修复] 真正的去重逻辑
      * 防止出现两个完全一样的方案
      */
-    private List<RouteResultDTO> deduplicate(List<RouteResultDTO> list) {
-        if (list == null || list.isEmpty()) return list;
-
-        // 使用 Set 记录已经出现过的“路线签名”
-        Set<String> signatures = new HashSet<>();
-        List<RouteResultDTO> uniqueList = new ArrayList<>();
-
-        for (RouteResultDTO route : list) {
-            String sig = generateSignature(route);
-            if (!signatures.contains(sig)) {
-                signatures.add(sig);
-                uniqueList.add(route);
-            }
-        }
+    private List<RoutePlan> deduplicate(List<RoutePlan> list) {
+        if (list == null || list.isEmpty()) return Collections.emptyList();
 
-        // 排序：时间短 > 换乘少
-        return uniqueList.stream()
-                .sorted(Comparator.comparingInt(RouteResultDTO::getDuration)
-                        .thenComparingInt(RouteResultDTO::getTransfers))
-                .limit(10) // 只取前10
-                .collect(Collectors.toList());
-    }
+        // 记录已经出现过的“路线签名”，签名在 createRoute 中已经算好
+        LongHashSet signatures = new LongHashSet(list.size());
+        List<RoutePlan> uniqueList = new ArrayList<>();
 
-    /**
-     * 生成路线签名：线路名 + 经过的站点序列
-     * 如果两个方案线路名一样，且经过的站点ID序列也完全一样，则视为重复
-     */
-    private String generateSignature(RouteResultDTO route) {
-        StringBuilder sb = new StringBuilder();
-        if (route.getSegments() != null) {
-            for (SegmentDTO seg : route.getSegments()) {
-                sb.append(seg.getLineName()).append(":"); // 线路名
-                sb.append(seg.getStations().toString()).append("|"); // 站点ID序列
+        for (RoutePlan plan : list) {
+            if (signatures.add(plan.getSignature())) {
+                uniqueList.add(plan);
             }
         }
-        return sb.toString();
+
+        // 排序：时间短 > 换乘少 > 站数少
+        uniqueList.sort(Comparator.comparingInt(RoutePlan::getDuration)
+                .thenComparingInt(RoutePlan::getTransfers)
+                .thenComparingInt(RoutePlan::getTotalStops));
+
+        // 被前面方案支配（耗时、换乘、站数都不占优）的直接丢弃，三项完全相同的备选保留
+        ParetoSet front = new ParetoSet();
+        List<RoutePlan> result = new ArrayList<>();
+        for (RoutePlan plan : uniqueList) {
+            if (front.dominates(plan.getDuration(), plan.getTransfers(), plan.getTotalStops())) continue;
+            front.add(plan.getDuration(), plan.getTransfers(), plan.getTotalStops());
+            result.add(plan);
+            if (result.size() == 10) break; // 只取前10
+        }
+        return result;
     }
 
     // --- Getters ---
-    public Map<Integer, Station> getStationMap() { return stationMap; }
-    public Map<Integer, Road> getRoadMap() { return roadMap; }
-    public Map<Integer, List<Integer>> getLineToStationsMap() { return lineToStationsMap; }
-    public Map<Integer, Set<Integer>> getStationToLinesMap() { return stationToLinesMap; }
-}
\ No newline at end of file
+    // 以下均为当前快照的只读视图；同一请求内需要多次访问时请先 getSnapshot() 再取用
+    public Map<Integer, Station> getStationMap() { return getSnapshot().getStationMap(); }
+    public Map<Integer, Road> getRoadMap() { return getSnapshot().getRoadMap(); }
+    public Map<Integer, List<Integer>> getLineToStationsMap() { return getSnapshot().getLineToStationsMap(); }
+    public Map<Integer, Set<Integer>> getStationToLinesMap() { return getSnapshot().getStationToLinesMap(); }
+}
@@ -0,0 +1,132 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.planner.RequestCoalescer;
+import com.example.bussystem.planner.RoutePlanCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径规划服务的运行指标（Micrometer），由 PathFindingService 持有
+ * 计时器和分布统计的直方图、百分位在 application.yml 的 management.metrics 中统一配置
+ *
+ *   bus.planner.requests        规划耗时，按查询方式(mode)、引擎、是否有结果(outcome)区分
+ *   bus.planner.rejected        最少换乘矩阵判定不可达、直接返回的查询数
+ *   bus.planner.candidates      每次查询去重前的候选方案数
+ *   bus.planner.bfs.queue       bfs 引擎单次查询中一层待展开线路序列的峰值数量
+ *   bus.planner.budget.exhausted 搜索预算用完、返回不完整结果的查询数，按引擎区分
+ *   bus.planner.cache.*         结果缓存的命中、未命中、淘汰次数及条数、命中率
+ *   bus.planner.coalesced       被合并到进行中请求的查询数
+ *   bus.snapshot.build          快照构建耗时，kind=full(全量加载) / incremental(单条数据变更)
+ *   bus.snapshot.matrix.build   最少换乘矩阵的后台构建耗时
+ *   bus.snapshot.*              当前快照的站点数、线路数、步行换乘数
+ *
+ * 带标签的计时器、计数器按标签组合只注册一次并保存下来，请求路径上不再重复构建和查找注册表。
+ */
+class PlannerMetrics {
+
+    private record RequestTags(String mode, String engine, boolean found) {}
+
+    private final MeterRegistry registry;
+    private final DistributionSummary bfsQueue;
+    private final Timer matrixBuild;
+    private final Counter rejected;
+    private final ConcurrentHashMap<RequestTags, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DistributionSummary> candidateSummaries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> exhaustedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> snapshotTimers = new ConcurrentHashMap<>();
+
+    PlannerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.bfsQueue = DistributionSummary.builder("bus.planner.bfs.queue")
+                .description("bfs 引擎单次查询中一层待展开线路序列的峰值数量")
+                .baseUnit("paths")
+                .register(registry);
+        this.matrixBuild = Timer.builder("bus.snapshot.matrix.build")
+                .description("最少换乘矩阵的构建耗时")
+                .register(registry);
+        this.rejected = registry.counter("bus.planner.rejected");
+    }
+
+    /**
+     * 注册依赖服务状态的指标（当前快照规模、结果缓存、合并请求），在服务构造完成后调用
+     */
+    void bindTo(PathFindingService service) {
+        Gauge.builder("bus.snapshot.stations", service, s -> s.getSnapshot().getStationMap().size())
+                .description("当前快照的站点数").register(registry);
+        Gauge.builder("bus.snapshot.lines", service, s -> s.getSnapshot().getRoadMap().size())
+                .description("当前快照的线路数").register(registry);
+        Gauge.builder("bus.snapshot.footpaths", service, s -> s.getSnapshot().getFootpathTable().count())
+                .description("当前快照的步行换乘边数").register(registry);
+
+        RoutePlanCache cache = service.getPlanCache();
+        FunctionCounter.builder("bus.planner.cache.gets", cache, RoutePlanCache::getHits)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("bus.planner.cache.gets", cache, RoutePlanCache::getMisses)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("bus.planner.cache.evictions", cache, RoutePlanCache::getEvictions)
+                .register(registry);
+        Gauge.builder("bus.planner.cache.size", cache, RoutePlanCache::size).register(registry);
+        Gauge.builder("bus.planner.cache.hit.ratio", cache, RoutePlanCache::getHitRatio).register(registry);
+
+        RequestCoalescer<?, ?> coalescer = service.getPlanCoalescer();
+        FunctionCounter.builder("bus.planner.coalesced", coalescer, RequestCoalescer::getCoalesced)
+                .register(registry);
+        Gauge.builder("bus.planner.inflight", coalescer, RequestCoalescer::inFlightCount)
+                .description("正在计算中的不同查询数").register(registry);
+    }
+
+    /**
+     * @param mode   station(按站点) / timed(按出发时刻) / location(按坐标)
+     * @param engine 实际执行搜索的引擎（配置为 csa 时，不带出发时刻的查询记为 raptor）
+     * @param found  是否找到方案
+     */
+    void planned(String mode, String engine, boolean found, long nanos) {
+        requestTimers.computeIfAbsent(new RequestTags(mode, engine, found), t -> Timer.builder("bus.planner.requests")
+                        .description("路径规划耗时")
+                        .tag("mode", t.mode())
+                        .tag("engine", t.engine())
+                        .tag("outcome", t.found() ? "found" : "empty")
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    void candidates(String engine, int count) {
+        candidateSummaries.computeIfAbsent(engine, e -> DistributionSummary.builder("bus.planner.candidates")
+                        .description("去重前的候选方案数")
+                        .tag("engine", e)
+                        .register(registry))
+                .record(count);
+    }
+
+    void budgetExhausted(String engine) {
+        exhaustedCounters.computeIfAbsent(engine, e -> registry.counter("bus.planner.budget.exhausted", "engine", e))
+                .increment();
+    }
+
+    void bfsQueuePeak(int size) {
+        bfsQueue.record(size);
+    }
+
+    void snapshotBuilt(String kind, long nanos) {
+        snapshotTimers.computeIfAbsent(kind, k -> Timer.builder("bus.snapshot.build")
+                        .description("路网快照的构建耗时")
+                        .tag("kind", k)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void matrixBuilt(long nanos) {
+        matrixBuild.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bussystem.controller;
+
+import com.example.bussystem.service.PathFindingService;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 查询接口的参数校验（进程内 MockMvc）
+ */
+class BusQueryControllerTest {
+
+    private static PathFindingService service;
+    private static MockMvc mvc;
+
+    @BeforeAll
+    static void setUp() {
+        service = new PathFindingService();
+        SyntheticNetwork.generate(9, 600, 120).loadInto(service);
+        BusQueryController controller = new BusQueryController();
+        ReflectionTestUtils.setField(controller, "busService", service);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void nearbyRejectsInvalidCoordinates() throws Exception {
+        for (String[] p : new String[][]{{"91", "113"}, {"-90.5", "113"}, {"28", "180.1"}, {"28", "-181"},
+                {"NaN", "113"}, {"28", "NaN"}, {"1e300", "113"}, {"28", "1e300"}}) {
+            mvc.perform(get("/api/stations/nearby").param("lat", p[0]).param("lng", p[1]))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void nearbyFarFromCityStillAnswers() throws Exception {
+        mvc.perform(get("/api/stations/nearby").param("lat", "0").param("lng", "0").param("k", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void nearbyClampsCount() throws Exception {
+        for (String k : new String[]{"0", "-3"}) {
+            mvc.perform(get("/api/stations/nearby").param("lat", "28.2").param("lng", "112.9").param("k", k))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1));
+        }
+        mvc.perform(get("/api/stations/nearby").param("lat", "28.2").param("lng", "112.9").param("k", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(50));
+    }
+
+    @Test
+    void suggestCarriesCoordinates() throws Exception {
+        mvc.perform(get("/api/stations/suggest").param("prefix", "枢纽"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(greaterThan(0)))
+                .andExpect(jsonPath("$[0].longitude").isNumber())
+                .andExpect(jsonPath("$[0].latitude").isNumber());
+    }
+
+    @Test
+    void singleCharacterSuggestAnswersFromTrieOnly() throws Exception {
+        // 枢纽站名形如 “X枢纽1”，“枢” 只在站名中间出现，单字输入不再按包含关系补足
+        mvc.perform(get("/api/stations/suggest").param("prefix", "枢"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].stationName", everyItem(startsWith("枢"))));
+        mvc.perform(get("/api/stations/suggest").param("prefix", "枢纽"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].stationName", everyItem(containsString("枢纽"))))
+                .andExpect(jsonPath("$.length()").value(greaterThan(0)));
+    }
+
+    @Test
+    void planByLocationRejectsInvalidCoordinates() throws Exception {
+        mvc.perform(get("/api/routes/plan/location")
+                        .param("fromLat", "28.2").param("fromLng", "112.9")
+                        .param("toLat", "1e300").param("toLng", "112.9"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/routes/plan/location")
+                        .param("fromLat", "NaN").param("fromLng", "112.9")
+                        .param("toLat", "28.2").param("toLng", "112.9"))
+                .andExpect(status().isBadRequest());
+    }
+}
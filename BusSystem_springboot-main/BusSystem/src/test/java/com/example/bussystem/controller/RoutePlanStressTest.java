@@ -0,0 +1,163 @@
+package com.example.bussystem.controller;
+
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.service.PathFindingService;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 城市规模路网上的并发压测：多个线程同时请求查询接口（进程内 MockMvc，不启动容器、不连数据库）
+ * 规模可用 -Dstress.stations / -Dstress.lines / -Dstress.requests / -Dstress.threads 调整，
+ * 延迟上限用 -Dstress.p99-ms 调整；吞吐和延迟分位数通过 JUnit 的 TestReporter 上报，同时写入日志
+ */
+class RoutePlanStressTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RoutePlanStressTest.class);
+
+    private static final int STATIONS = Integer.getInteger("stress.stations", 10_000);
+    private static final int LINES = Integer.getInteger("stress.lines", 2_000);
+    private static final int REQUESTS = Integer.getInteger("stress.requests", 400);
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    // 单次查询有 1 秒的搜索预算，p99 超过这个上限说明有查询没有被预算约束住
+    private static final long P99_LIMIT_MS = Long.getLong("stress.p99-ms", 3_000);
+    // 最热门的若干个枢纽两两之间，在允许的最大换乘次数内都应能规划出路线
+    private static final int HUB_PAIRS_FROM = 8;
+
+    private static SyntheticNetwork network;
+    private static PathFindingService service;
+    private static MockMvc mvc;
+
+    @BeforeAll
+    static void setUp() {
+        network = SyntheticNetwork.generate(20240601, STATIONS, LINES);
+        service = new PathFindingService();
+        network.loadInto(service);
+        BusQueryController controller = new BusQueryController();
+        ReflectionTestUtils.setField(controller, "busService", service);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void concurrentQueriesAllSucceed(TestReporter reporter) throws Exception {
+        // 请求列表由固定种子生成：以路径规划为主，混合站点搜索、输入提示和按坐标规划
+        Random rnd = new Random(7);
+        List<Station> stations = network.getStations();
+        List<RequestBuilder> requests = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            Station from = stations.get(rnd.nextInt(stations.size()));
+            Station to = i % 5 == 0
+                    ? stations.get(network.getHubs().get(rnd.nextInt(network.getHubs().size())) - 1)
+                    : stations.get(rnd.nextInt(stations.size()));
+            switch (i % 10) {
+                case 0, 1, 2, 3, 4 -> requests.add(get("/api/routes/plan")
+                        .param("start", "" + from.getStationId())
+                        .param("end", i % 2 == 0 ? to.getStationName() : "" + to.getStationId())
+                        .param("maxTransfers", "" + (i % 4)));
+                case 5, 6 -> requests.add(get("/api/routes/plan")
+                        .param("start", "" + from.getStationId())
+                        .param("end", "" + to.getStationId())
+                        .param("maxTransfers", "2")
+                        .param("departAt", String.format("%02d:%02d", 6 + rnd.nextInt(15), rnd.nextInt(60))));
+                case 7 -> requests.add(get("/api/routes/plan/location")
+                        .param("fromLat", "" + from.getLatitude()).param("fromLng", "" + from.getLongitude())
+                        .param("toLat", "" + to.getLatitude()).param("toLng", "" + to.getLongitude())
+                        .param("maxTransfers", "2"));
+                case 8 -> requests.add(get("/api/stations/search").param("query", from.getStationName().substring(0, 2)));
+                default -> requests.add(get("/api/stations/suggest").param("prefix", from.getStationName().substring(0, 1)));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long begin = System.nanoTime();
+        for (RequestBuilder request : requests) {
+            futures.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                int status = mvc.perform(request).andReturn().getResponse().getStatus();
+                return new long[]{status, System.nanoTime() - start};
+            }));
+        }
+        long[] latencies = new long[futures.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            long[] r = futures.get(i).get();
+            assertEquals(200, r[0], "第 " + i + " 个请求失败");
+            latencies[i] = r[1];
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        long p99 = latencies[latencies.length * 99 / 100] / 1_000_000;
+        Map<String, String> report = new LinkedHashMap<>();
+        report.put("stations", "" + STATIONS);
+        report.put("lines", "" + LINES);
+        report.put("requests", "" + REQUESTS);
+        report.put("threads", "" + THREADS);
+        report.put("throughputPerSecond", "" + REQUESTS * 1_000_000_000L / elapsed);
+        report.put("p50Ms", "" + latencies[latencies.length / 2] / 1_000_000);
+        report.put("p95Ms", "" + latencies[latencies.length * 95 / 100] / 1_000_000);
+        report.put("p99Ms", "" + p99);
+        report.put("maxMs", "" + latencies[latencies.length - 1] / 1_000_000);
+        reporter.publishEntry(report);
+        log.info("压测完成: {}", report);
+        assertTrue(p99 <= P99_LIMIT_MS, "p99 " + p99 + "ms 超过上限 " + P99_LIMIT_MS + "ms");
+    }
+
+    @Test
+    void hubToHubRoutesAreFound() throws Exception {
+        List<Integer> hubs = network.getHubs().subList(0, Math.min(HUB_PAIRS_FROM, network.getHubs().size()));
+        for (int from : hubs) {
+            for (int to : hubs) {
+                if (from == to) continue;
+                mvc.perform(get("/api/routes/plan")
+                                .param("start", "" + from)
+                                .param("end", "" + to)
+                                .param("maxTransfers", "4"))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.length()").value(greaterThan(0)))
+                        .andExpect(jsonPath("$[0].segments.length()").value(greaterThan(0)));
+            }
+        }
+    }
+
+    // 发布快照时会回填 Road.stationIds，这里比较两份都未发布过的数据
+    @Test
+    void generatorIsDeterministic() {
+        SyntheticNetwork a = SyntheticNetwork.generate(99, 2_000, 400);
+        SyntheticNetwork b = SyntheticNetwork.generate(99, 2_000, 400);
+        assertEquals(a.getStations(), b.getStations());
+        assertEquals(a.getRoads(), b.getRoads());
+        assertEquals(a.getRelations(), b.getRelations());
+        assertEquals(400, a.getRoads().size());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.bussystem.controller;
+
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.service.PathFindingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /api/routes/plan 的 departAt：出发时刻不同，等车时间和到达时刻随之变化，跨零点的夜班线路按实际班次计算
+ * 路网只有一条夜班线路 1 -> 2 -> 3，22:00 ~ 次日 02:00 每 10 分钟一班，站间 10 分钟
+ */
+class TimedRoutePlanTest {
+
+    private static MockMvc mvc(String engine) {
+        List<Station> stations = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Station s = new Station();
+            s.setStationId(i);
+            s.setStationName("站点" + i);
+            stations.add(s);
+        }
+        Road road = new Road();
+        road.setLineOrder(1);
+        road.setLineName("夜1路");
+        road.setDirection("上行");
+        road.setStartTime(Time.valueOf("22:00:00"));
+        road.setFinishTime(Time.valueOf("02:00:00"));
+        road.setIntervalTime(10);
+        List<LineStation> relations = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            LineStation ls = new LineStation();
+            ls.setLineOrder(1);
+            ls.setStationId(i);
+            ls.setSequenceNo(i);
+            relations.add(ls);
+        }
+
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", engine);
+        service.publish(NetworkSnapshot.build(stations, List.of(road), relations));
+        BusQueryController controller = new BusQueryController();
+        ReflectionTestUtils.setField(controller, "busService", service);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void departAtDrivesWaitingAndArrival() throws Exception {
+        for (String engine : new String[]{"raptor", "csa"}) {
+            MockMvc mvc = mvc(engine);
+            // 00:25 出发：等前一晚开出的 00:30 那班，5 分钟后上车
+            mvc.perform(get("/api/routes/plan").param("start", "1").param("end", "3").param("departAt", "00:25"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1))
+                    .andExpect(jsonPath("$[0].departureTime").value("00:25"))
+                    .andExpect(jsonPath("$[0].arrivalTime").value("00:50"))
+                    .andExpect(jsonPath("$[0].duration").value(25))
+                    .andExpect(jsonPath("$[0].segments[0].departureTime").value("00:30"))
+                    .andExpect(jsonPath("$[0].segments[0].waitMinutes").value(5));
+            // 晚一分钟出发就要等下一班
+            mvc.perform(get("/api/routes/plan").param("start", "1").param("end", "3").param("departAt", "00:31"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].arrivalTime").value("01:00"))
+                    .andExpect(jsonPath("$[0].duration").value(29))
+                    .andExpect(jsonPath("$[0].segments[0].waitMinutes").value(9));
+            // 从中间站上车：前一晚 23:50 从始发站开出的那班 00:00 到站
+            mvc.perform(get("/api/routes/plan").param("start", "2").param("end", "3").param("departAt", "00:00"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].segments[0].departureTime").value("00:00"))
+                    .andExpect(jsonPath("$[0].arrivalTime").value("00:10"));
+            // 前一晚末班已过，要等到当晚首班
+            mvc.perform(get("/api/routes/plan").param("start", "1").param("end", "3").param("departAt", "02:05"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].segments[0].departureTime").value("22:00"))
+                    .andExpect(jsonPath("$[0].arrivalTime").value("22:20"));
+            // 不填出发时刻时按静态耗时规划，不给出时刻
+            mvc.perform(get("/api/routes/plan").param("start", "1").param("end", "3"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].duration").value(20))
+                    .andExpect(jsonPath("$[0].arrivalTime").doesNotExist());
+        }
+    }
+}
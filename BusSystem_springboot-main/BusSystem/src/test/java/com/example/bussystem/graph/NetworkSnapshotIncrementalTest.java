@@ -0,0 +1,281 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Time;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量更新与全量构建的等价性
+ * 在合成路网上随机执行站点改名/移动/新增/删除、线路新增/修改/删除，每一步都与按同一份数据全量构建的快照逐项比较
+ */
+class NetworkSnapshotIncrementalTest {
+
+    // 全量构建用的原始数据，与增量快照同步修改
+    private final Map<Integer, Station> stations = new TreeMap<>();
+    private final Map<Integer, Road> roads = new TreeMap<>();
+    private final Map<Integer, List<Integer>> sequences = new TreeMap<>();
+
+    private NetworkSnapshot load(long seed) {
+        SyntheticNetwork network = SyntheticNetwork.generate(seed, 600, 120);
+        for (Station s : network.getStations()) stations.put(s.getStationId(), copy(s));
+        for (Road r : network.getRoads()) {
+            roads.put(r.getLineOrder(), r);
+            sequences.put(r.getLineOrder(), new ArrayList<>());
+        }
+        List<LineStation> relations = new ArrayList<>(network.getRelations());
+        relations.sort(Comparator.comparingInt(LineStation::getLineOrder).thenComparingInt(LineStation::getSequenceNo));
+        for (LineStation ls : relations) sequences.get(ls.getLineOrder()).add(ls.getStationId());
+        return network.snapshot();
+    }
+
+    private NetworkSnapshot fullBuild() {
+        List<Road> roadList = new ArrayList<>();
+        List<LineStation> relations = new ArrayList<>();
+        for (Road r : roads.values()) {
+            Road c = new Road();
+            c.setLineOrder(r.getLineOrder());
+            c.setLineName(r.getLineName());
+            c.setDirection(r.getDirection());
+            c.setStartTime(r.getStartTime());
+            c.setFinishTime(r.getFinishTime());
+            c.setIntervalTime(r.getIntervalTime());
+            roadList.add(c);
+            List<Integer> seq = sequences.get(r.getLineOrder());
+            for (int i = 0; i < seq.size(); i++) {
+                LineStation ls = new LineStation();
+                ls.setLineOrder(r.getLineOrder());
+                ls.setStationId(seq.get(i));
+                ls.setSequenceNo(i + 1);
+                relations.add(ls);
+            }
+        }
+        return NetworkSnapshot.build(new ArrayList<>(stations.values()), roadList, relations);
+    }
+
+    @Test
+    void renameReusesTopologyAndMatrix() {
+        NetworkSnapshot before = load(7);
+        TransferMatrix matrix = before.buildTransferMatrix();
+        Station s = copy(stations.values().iterator().next());
+        s.setStationName(s.getStationName() + "东");
+
+        NetworkSnapshot after = before.withStation(s);
+        stations.put(s.getStationId(), s);
+
+        assertSame(before.getCompactGraph(), after.getCompactGraph());
+        assertSame(before.getTransferTable(), after.getTransferTable());
+        assertSame(before.getFootpathTable(), after.getFootpathTable());
+        assertSame(before.getTimetable(), after.getTimetable());
+        assertSame(before.getStationSpatialIndex(), after.getStationSpatialIndex());
+        assertSame(matrix, after.getTransferMatrix());
+        assertEquals(List.of(s.getStationId()), after.getStationNameIndex().search(s.getStationName(), 1));
+        assertEquivalent(fullBuild(), after);
+    }
+
+    @Test
+    void lineEditKeepsStationIndexes() {
+        NetworkSnapshot before = load(8);
+        Road road = roads.values().iterator().next();
+        List<Integer> seq = new ArrayList<>(sequences.get(road.getLineOrder()));
+        Collections.reverse(seq);
+
+        NetworkSnapshot after = before.withLine(road, seq);
+        sequences.put(road.getLineOrder(), seq);
+
+        assertSame(before.getFootpathTable(), after.getFootpathTable());
+        assertSame(before.getStationNameIndex(), after.getStationNameIndex());
+        assertSame(before.getStationSpatialIndex(), after.getStationSpatialIndex());
+        assertEquivalent(fullBuild(), after);
+    }
+
+    @Test
+    void randomEditsMatchFullBuild() {
+        NetworkSnapshot snap = load(20240601);
+        snap.buildTransferMatrix();
+        Random rnd = new Random(99);
+        int nextStation = Collections.max(stations.keySet()) + 1;
+        int nextLine = Collections.max(roads.keySet()) + 1;
+
+        for (int step = 0; step < 40; step++) {
+            List<Integer> stationIds = new ArrayList<>(stations.keySet());
+            List<Integer> lineIds = new ArrayList<>(roads.keySet());
+            Integer sid = stationIds.get(rnd.nextInt(stationIds.size()));
+            Integer lid = lineIds.get(rnd.nextInt(lineIds.size()));
+            String edit;
+            switch (step % 7) {
+                case 0 -> {
+                    edit = "改名 " + sid;
+                    Station s = copy(stations.get(sid));
+                    s.setStationName(s.getStationName() + step);
+                    stations.put(sid, s);
+                    snap = snap.withStation(s);
+                }
+                case 1 -> {
+                    edit = "移动 " + sid;
+                    Station s = copy(stations.get(sid));
+                    s.setLatitude(s.getLatitude() + (rnd.nextDouble() - 0.5) * 0.004);
+                    s.setLongitude(s.getLongitude() + (rnd.nextDouble() - 0.5) * 0.004);
+                    stations.put(sid, s);
+                    snap = snap.withStation(s);
+                }
+                case 2 -> {
+                    // 新站点放在已有站点旁边，保证会产生步行边
+                    Station near = stations.get(sid);
+                    Station s = new Station();
+                    s.setStationId(nextStation++);
+                    s.setStationName("新增站" + step);
+                    s.setLatitude(near.getLatitude() + 0.0005);
+                    s.setLongitude(near.getLongitude());
+                    edit = "新增站点 " + s.getStationId();
+                    stations.put(s.getStationId(), s);
+                    snap = snap.withStation(s);
+                }
+                case 3 -> {
+                    edit = "删除站点 " + sid;
+                    stations.remove(sid);
+                    for (List<Integer> seq : sequences.values()) seq.removeIf(sid::equals);
+                    snap = snap.withoutStation(sid);
+                }
+                case 4 -> {
+                    // 新线路穿过随机站点，首站重复一次构成环线
+                    Road road = newRoad(nextLine++, step);
+                    List<Integer> seq = new ArrayList<>();
+                    while (seq.size() < 8) {
+                        Integer s = stationIds.get(rnd.nextInt(stationIds.size()));
+                        if (!seq.contains(s)) seq.add(s);
+                    }
+                    seq.add(seq.get(0));
+                    edit = "新增线路 " + road.getLineOrder();
+                    roads.put(road.getLineOrder(), road);
+                    sequences.put(road.getLineOrder(), seq);
+                    snap = snap.withLine(road, seq);
+                }
+                case 5 -> {
+                    edit = "修改线路 " + lid;
+                    List<Integer> seq = new ArrayList<>(sequences.get(lid));
+                    if (seq.size() > 2) seq.remove(1);
+                    seq.add(stationIds.get(rnd.nextInt(stationIds.size())));
+                    Road road = newRoad(lid, step);
+                    roads.put(lid, road);
+                    sequences.put(lid, seq);
+                    snap = snap.withLine(road, seq);
+                }
+                default -> {
+                    edit = "删除线路 " + lid;
+                    roads.remove(lid);
+                    sequences.remove(lid);
+                    snap = snap.withoutLine(lid);
+                }
+            }
+            snap.buildTransferMatrix();
+            String where = "第 " + step + " 步(" + edit + ")";
+            try {
+                assertEquivalent(fullBuild(), snap);
+            } catch (AssertionError e) {
+                fail(where + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // 逐项比较两个快照；两者的稠密编号都按 ID 升序分配，可以直接按下标比较
+    private static void assertEquivalent(NetworkSnapshot expected, NetworkSnapshot actual) {
+        assertEquals(expected.getStationMap().keySet(), actual.getStationMap().keySet());
+        for (Station s : expected.getStationMap().values()) {
+            Station a = actual.getStationMap().get(s.getStationId());
+            assertEquals(s.getStationName(), a.getStationName());
+            assertEquals(s.getLatitude(), a.getLatitude());
+            assertEquals(s.getLongitude(), a.getLongitude());
+        }
+        assertEquals(expected.getLineToStationsMap(), actual.getLineToStationsMap());
+        assertEquals(expected.getStationToLinesMap(), actual.getStationToLinesMap());
+        for (Road r : expected.getRoadMap().values()) {
+            assertEquals(r.getStationIds(), actual.getRoadMap().get(r.getLineOrder()).getStationIds());
+        }
+
+        CompactGraph eg = expected.getCompactGraph();
+        CompactGraph ag = actual.getCompactGraph();
+        assertEquals(eg.stationCount(), ag.stationCount());
+        assertEquals(eg.lineCount(), ag.lineCount());
+        for (int s = 0; s < eg.stationCount(); s++) assertEquals(eg.stationId(s), ag.stationId(s));
+        for (int l = 0; l < eg.lineCount(); l++) assertEquals(eg.lineId(l), ag.lineId(l));
+
+        TransferTable et = expected.getTransferTable();
+        TransferTable at = actual.getTransferTable();
+        assertEquals(et.pairCount(), at.pairCount(), "换乘线路对数");
+        for (int l = 0; l < eg.lineCount(); l++) {
+            assertEquals(et.pairsStart(l), at.pairsStart(l));
+            for (int e = et.pairsStart(l); e < et.pairsEnd(l); e++) {
+                assertEquals(et.pairLine(e), at.pairLine(e));
+                assertEquals(et.sharedStart(e), at.sharedStart(e));
+                for (int i = et.sharedStart(e); i < et.sharedEnd(e); i++) {
+                    assertEquals(et.sharedStop(i), at.sharedStop(i));
+                    assertEquals(et.sharedPosFrom(i), at.sharedPosFrom(i));
+                    assertEquals(et.sharedPosTo(i), at.sharedPosTo(i));
+                }
+            }
+        }
+
+        FootpathTable ef = expected.getFootpathTable();
+        FootpathTable af = actual.getFootpathTable();
+        assertEquals(ef.count(), af.count(), "步行边数");
+        for (int s = 0; s < eg.stationCount(); s++) {
+            assertEquals(ef.footpathsStart(s), af.footpathsStart(s));
+            for (int i = ef.footpathsStart(s); i < ef.footpathsEnd(s); i++) {
+                assertEquals(ef.target(i), af.target(i));
+                assertEquals(ef.minutes(i), af.minutes(i));
+                assertEquals(ef.meters(i), af.meters(i));
+            }
+        }
+
+        Timetable ett = expected.getTimetable();
+        Timetable att = actual.getTimetable();
+        assertEquals(ett.totalTrips(), att.totalTrips());
+        for (int l = 0; l < eg.lineCount(); l++) {
+            assertEquals(ett.tripCount(l), att.tripCount(l));
+            for (int k = 0; k < ett.tripCount(l); k++) assertEquals(ett.departure(l, k), att.departure(l, k));
+        }
+
+        for (Station s : expected.getStationMap().values()) {
+            assertEquals(expected.getStationNameIndex().search(s.getStationName(), 5),
+                    actual.getStationNameIndex().search(s.getStationName(), 5));
+            assertEquals(expected.getStationSpatialIndex().withinRadiusOf(s.getStationId(), 300),
+                    actual.getStationSpatialIndex().withinRadiusOf(s.getStationId(), 300));
+        }
+        assertEquals(expected.getStationPrefixTrie().suggest("新", 20), actual.getStationPrefixTrie().suggest("新", 20));
+
+        TransferMatrix em = expected.buildTransferMatrix();
+        TransferMatrix am = actual.buildTransferMatrix();
+        for (int a = 0; a < eg.lineCount(); a++) {
+            for (int b = 0; b < eg.lineCount(); b++) {
+                assertEquals(em.transfers(a, b), am.transfers(a, b), "最少换乘矩阵");
+            }
+        }
+    }
+
+    private static Road newRoad(int lineOrder, int step) {
+        Road road = new Road();
+        road.setLineOrder(lineOrder);
+        road.setLineName("测试" + lineOrder + "路");
+        road.setDirection("上行");
+        road.setStartTime(Time.valueOf("06:00:00"));
+        road.setFinishTime(Time.valueOf(step % 2 == 0 ? "22:00:00" : "23:30:00"));
+        road.setIntervalTime(4 + step % 6);
+        return road;
+    }
+
+    private static Station copy(Station s) {
+        Station c = new Station();
+        c.setStationId(s.getStationId());
+        c.setStationName(s.getStationName());
+        c.setLatitude(s.getLatitude());
+        c.setLongitude(s.getLongitude());
+        return c;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 空间索引与逐个计算距离的结果一致，包括查询点远在网格之外的情况
+ */
+class StationSpatialIndexTest {
+
+    private static List<Station> stations;
+    private static StationSpatialIndex index;
+
+    @BeforeAll
+    static void buildIndex() {
+        SyntheticNetwork network = SyntheticNetwork.generate(9, 600, 120);
+        stations = network.getStations();
+        index = StationSpatialIndex.build(stations);
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random rnd = new Random(9);
+        Station any = stations.get(0);
+        for (int i = 0; i < 200; i++) {
+            // 大部分在城市范围内，少量在几十到上千公里外
+            double spread = i % 10 == 0 ? 10 : 0.05;
+            double lat = any.getLatitude() + (rnd.nextDouble() - 0.5) * spread;
+            double lng = any.getLongitude() + (rnd.nextDouble() - 0.5) * spread;
+            assertSameNeighbors(bruteForce(lat, lng, 5), index.nearest(lat, lng, 5), lat + ", " + lng);
+        }
+    }
+
+    @Test
+    void withinRadiusMatchesBruteForce() {
+        Random rnd = new Random(10);
+        Station any = stations.get(0);
+        for (int i = 0; i < 100; i++) {
+            double lat = any.getLatitude() + (rnd.nextDouble() - 0.5) * 0.05;
+            double lng = any.getLongitude() + (rnd.nextDouble() - 0.5) * 0.05;
+            List<StationSpatialIndex.Neighbor> expected = bruteForce(lat, lng, stations.size());
+            expected.removeIf(n -> n.meters() > 800);
+            assertSameNeighbors(expected, index.withinRadius(lat, lng, 800), lat + ", " + lng);
+        }
+    }
+
+    @Test
+    void farAwayQueryStillFindsNearest() {
+        // (0, 0) 离城市上千公里，网格外的空圈直接跳过，每圈只遍历与网格相交的格子
+        assertSameNeighbors(bruteForce(0, 0, 3), index.nearest(0, 0, 3), "0, 0");
+        assertTrue(index.withinRadius(0, 0, 800).isEmpty());
+    }
+
+    @Test
+    void invalidCoordinatesReturnEmpty() {
+        for (double[] p : new double[][]{{1e300, 113}, {28, 1e300}, {Double.NaN, 113}, {28, Double.NaN},
+                {91, 113}, {-91, 113}, {28, 181}, {28, -181}}) {
+            assertFalse(StationSpatialIndex.isValidCoordinate(p[0], p[1]));
+            assertTrue(index.nearest(p[0], p[1], 5).isEmpty());
+            assertTrue(index.withinRadius(p[0], p[1], 800).isEmpty());
+        }
+        assertTrue(StationSpatialIndex.isValidCoordinate(90, 180));
+        assertTrue(StationSpatialIndex.isValidCoordinate(-90, -180));
+    }
+
+    private static void assertSameNeighbors(List<StationSpatialIndex.Neighbor> expected,
+                                            List<StationSpatialIndex.Neighbor> actual, String message) {
+        assertEquals(expected.size(), actual.size(), message);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).stationId(), actual.get(i).stationId(), message);
+            assertEquals(expected.get(i).meters(), actual.get(i).meters(), 1e-6, message);
+        }
+    }
+
+    // 逐个站点计算距离，投影方式与索引相同（按全部站点的平均纬度换算经度）
+    private static List<StationSpatialIndex.Neighbor> bruteForce(double lat, double lng, int k) {
+        double sumLat = 0;
+        for (Station s : stations) sumLat += s.getLatitude();
+        double cosLat = Math.cos(Math.toRadians(sumLat / stations.size()));
+        List<StationSpatialIndex.Neighbor> all = new ArrayList<>();
+        for (Station s : stations) {
+            double dx = (s.getLongitude() - lng) * 111_320.0 * cosLat;
+            double dy = (s.getLatitude() - lat) * 111_320.0;
+            all.add(new StationSpatialIndex.Neighbor(s.getStationId(), Math.hypot(dx, dy)));
+        }
+        all.sort(Comparator.comparingDouble(StationSpatialIndex.Neighbor::meters)
+                .thenComparingInt(StationSpatialIndex.Neighbor::stationId));
+        return new ArrayList<>(all.subList(0, Math.min(k, all.size())));
+    }
+}
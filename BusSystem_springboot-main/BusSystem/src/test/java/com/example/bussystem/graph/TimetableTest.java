@@ -0,0 +1,111 @@
+package com.example.bussystem.graph;
+
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 发车时刻表：普通线路与跨零点运营的夜班线路
+ */
+class TimetableTest {
+
+    private static final int NIGHT = 1;
+    private static final int DAY = 2;
+
+    private static NetworkSnapshot snapshot;
+
+    @BeforeAll
+    static void buildNetwork() {
+        List<Station> stations = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Station s = new Station();
+            s.setStationId(i);
+            s.setStationName("站点" + i);
+            stations.add(s);
+        }
+        List<Road> roads = new ArrayList<>();
+        List<LineStation> relations = new ArrayList<>();
+        addLine(roads, relations, NIGHT, "夜1路", "22:00:00", "02:00:00", 30);
+        addLine(roads, relations, DAY, "1路", "06:00:00", "22:00:00", 30);
+        snapshot = NetworkSnapshot.build(stations, roads, relations);
+    }
+
+    static void addLine(List<Road> roads, List<LineStation> relations, int lineOrder, String name,
+                        String start, String finish, int interval) {
+        Road road = new Road();
+        road.setLineOrder(lineOrder);
+        road.setLineName(name);
+        road.setDirection("上行");
+        road.setStartTime(Time.valueOf(start));
+        road.setFinishTime(Time.valueOf(finish));
+        road.setIntervalTime(interval);
+        roads.add(road);
+        for (int i = 1; i <= 3; i++) {
+            LineStation ls = new LineStation();
+            ls.setLineOrder(lineOrder);
+            ls.setStationId(i);
+            ls.setSequenceNo(i);
+            relations.add(ls);
+        }
+    }
+
+    private static int line(int lineOrder) {
+        return snapshot.getCompactGraph().lineIndexOf(lineOrder);
+    }
+
+    private static int minutes(int hour, int minute) {
+        return hour * 60 + minute;
+    }
+
+    @Test
+    void overnightLineAfterMidnightCatchesPreviousNightsTrips() {
+        Timetable tt = snapshot.getTimetable();
+        int night = line(NIGHT);
+        // 22:00 ~ 次日 02:00，每 30 分钟一班
+        assertEquals(9, tt.tripCount(night));
+        assertEquals(minutes(0, 30), tt.nextDeparture(night, minutes(0, 30)));
+        assertEquals(minutes(1, 0), tt.nextDeparture(night, minutes(0, 31)));
+        assertEquals(minutes(2, 0), tt.nextDeparture(night, minutes(1, 45)));
+        // 当晚首班之前、前一晚末班之后，只能等当晚首班
+        assertEquals(minutes(22, 0), tt.nextDeparture(night, minutes(2, 1)));
+        assertEquals(minutes(23, 0), tt.nextDeparture(night, minutes(22, 40)));
+        assertEquals(minutes(24, 30), tt.nextDeparture(night, minutes(24, 10)));
+        // 下游站点凌晨上车时反推到始发站可能早于 0 点：前一晚 23:30 开出的那一班
+        assertEquals(-30, tt.nextDeparture(night, -45));
+        assertEquals(Timetable.NO_DEPARTURE, tt.nextDeparture(night, minutes(26, 1)));
+    }
+
+    @Test
+    void dayLineDoesNotWrap() {
+        Timetable tt = snapshot.getTimetable();
+        int day = line(DAY);
+        assertEquals(minutes(6, 0), tt.nextDeparture(day, minutes(0, 30)));
+        assertEquals(minutes(8, 30), tt.nextDeparture(day, minutes(8, 1)));
+        assertEquals(minutes(22, 0), tt.nextDeparture(day, minutes(21, 31)));
+        assertEquals(Timetable.NO_DEPARTURE, tt.nextDeparture(day, minutes(22, 1)));
+    }
+
+    @Test
+    void connectionTableIncludesPreviousNightsTrips() {
+        ConnectionTable ct = snapshot.getConnectionTable();
+        int night = line(NIGHT);
+        // 00:30 之后最早的一条夜班连接来自前一晚 00:30 开出的那一班
+        boolean found = false;
+        for (int c = ct.firstDepartingAt(minutes(0, 30)); c < ct.size(); c++) {
+            if (ct.tripLine(ct.trip(c)) == night) {
+                assertEquals(minutes(0, 30), ct.depTime(c));
+                found = true;
+                break;
+            }
+        }
+        assertTrue(found);
+    }
+}
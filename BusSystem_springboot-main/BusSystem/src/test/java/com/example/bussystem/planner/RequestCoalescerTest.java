@@ -0,0 +1,110 @@
+package com.example.bussystem.planner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并发相同请求合并：同一 key 只计算一次，结果和异常都交给所有等待方
+ */
+class RequestCoalescerTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void concurrentIdenticalRequestsComputeOnce() throws Exception {
+        RequestCoalescer<String, Object> coalescer = new RequestCoalescer<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object value = new Object();
+
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            results.add(pool.submit(() -> coalescer.execute("a", () -> {
+                computations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return value;
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < CALLERS; i++) {
+                results.add(pool.submit(() -> coalescer.execute("a", () -> {
+                    computations.incrementAndGet();
+                    return new Object();
+                })));
+            }
+            // 等其余请求都挂到正在进行的计算上再放行
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalescer.getCoalesced() < CALLERS - 1 && System.nanoTime() < deadline) Thread.sleep(1);
+            release.countDown();
+
+            for (Future<Object> f : results) assertSame(value, f.get(5, TimeUnit.SECONDS));
+            assertEquals(1, computations.get());
+            assertEquals(CALLERS - 1, coalescer.getCoalesced());
+            assertEquals(0, coalescer.inFlightCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failurePropagatesToWaiters() throws Exception {
+        RequestCoalescer<String, Object> coalescer = new RequestCoalescer<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> owner = pool.submit(() -> coalescer.execute("a", () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("boom");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Object> waiter = pool.submit(() -> coalescer.execute("a", Object::new));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalescer.getCoalesced() < 1 && System.nanoTime() < deadline) Thread.sleep(1);
+            release.countDown();
+
+            for (Future<Object> f : List.of(owner, waiter)) {
+                Exception e = assertThrows(Exception.class, () -> f.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+            // 失败后不残留，下一次请求重新计算
+            assertEquals(0, coalescer.inFlightCount());
+            assertEquals("ok", coalescer.execute("a", () -> "ok"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void sequentialRequestsAreNotCached() {
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>();
+        AtomicInteger computations = new AtomicInteger();
+        coalescer.execute("a", computations::incrementAndGet);
+        coalescer.execute("a", computations::incrementAndGet);
+        coalescer.execute("b", computations::incrementAndGet);
+        assertEquals(3, computations.get());
+        assertEquals(0, coalescer.getCoalesced());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.bussystem.planner;
+
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 规划结果缓存：按快照失效、拒绝旧快照上的结果、LRU 淘汰
+ */
+class RoutePlanCacheTest {
+
+    private static NetworkSnapshot first;
+    private static NetworkSnapshot second;
+
+    @BeforeAll
+    static void buildSnapshots() {
+        SyntheticNetwork network = SyntheticNetwork.generate(3, 600, 120);
+        first = network.snapshot();
+        second = network.snapshot();
+    }
+
+    private static RoutePlanCache cache(int capacity) {
+        return new RoutePlanCache(capacity, () -> first);
+    }
+
+    private static List<RoutePlan> plans(int duration) {
+        return List.of(new RoutePlan(new int[]{0}, new int[]{0}, new int[]{1}, new int[]{-1}, null,
+                -1, 1, duration, duration));
+    }
+
+    @Test
+    void hitOnlyForSameSnapshot() {
+        RoutePlanCache cache = cache(10);
+        List<RoutePlan> routes = plans(5);
+        cache.put(first, 1, 2, 3, routes);
+
+        assertSame(routes.get(0), cache.get(first, 1, 2, 3).get(0));
+        assertNull(cache.get(first, 1, 2, 2), "换乘次数不同是另一个键");
+        assertNull(cache.get(second, 1, 2, 3), "快照替换后旧结果视为未命中");
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void rejectsResultsFromReplacedSnapshot() {
+        AtomicReference<NetworkSnapshot> current = new AtomicReference<>(first);
+        RoutePlanCache cache = new RoutePlanCache(10, current::get);
+        // 请求在 first 上开始计算，期间 second 发布并清空缓存，之后才放入结果
+        current.set(second);
+        cache.invalidateAll();
+        cache.put(first, 1, 2, 3, plans(5));
+        assertEquals(0, cache.size(), "旧快照上的结果不进缓存");
+
+        cache.put(second, 1, 2, 3, plans(6));
+        assertEquals(6, cache.get(second, 1, 2, 3).get(0).getDuration());
+    }
+
+    @Test
+    void withWalkCopiesCachedPlan() {
+        RoutePlanCache cache = cache(10);
+        cache.put(first, 1, 2, 3, plans(5));
+        RoutePlan cached = cache.get(first, 1, 2, 3).get(0);
+        RoutePlan walked = cached.withWalk(300, 100, 5);
+
+        assertNotSame(cached, walked);
+        assertEquals(10, walked.getDuration());
+        assertEquals(300, walked.getStartWalkMeters());
+        assertEquals(100, walked.getEndWalkMeters());
+        // 缓存中的方案不受影响
+        assertEquals(5, cache.get(first, 1, 2, 3).get(0).getDuration());
+        assertNull(cache.get(first, 1, 2, 3).get(0).getStartWalkMeters());
+    }
+
+    @Test
+    void invalidateAllDropsEntries() {
+        RoutePlanCache cache = cache(10);
+        cache.put(first, 1, 2, 3, plans(5));
+        cache.put(first, 2, 1, 3, plans(6));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(first, 1, 2, 3));
+    }
+
+    @Test
+    void storedListIsDetachedFromCaller() {
+        RoutePlanCache cache = cache(10);
+        List<RoutePlan> routes = new ArrayList<>(plans(5));
+        cache.put(first, 1, 2, 3, routes);
+        routes.clear();
+        assertEquals(1, cache.get(first, 1, 2, 3).size());
+        assertThrows(UnsupportedOperationException.class, () -> cache.get(first, 1, 2, 3).clear());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        RoutePlanCache cache = cache(2);
+        cache.put(first, 1, 2, 0, plans(1));
+        cache.put(first, 2, 3, 0, plans(2));
+        // 访问 1->2 后，2->3 成为最久未使用的条目
+        assertNotNull(cache.get(first, 1, 2, 0));
+        cache.put(first, 3, 4, 0, plans(3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get(first, 1, 2, 0));
+        assertNull(cache.get(first, 2, 3, 0));
+        assertNotNull(cache.get(first, 3, 4, 0));
+    }
+
+    @Test
+    void zeroCapacityDisablesCache() {
+        RoutePlanCache cache = cache(10);
+        cache.put(first, 1, 2, 3, plans(5));
+        cache.setCapacity(0);
+        assertEquals(0, cache.size());
+        cache.put(first, 1, 2, 3, plans(5));
+        assertEquals(0, cache.size());
+        assertNull(cache.get(first, 1, 2, 3));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.CompactGraph;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.graph.TransferTable;
+import com.example.bussystem.planner.BidirectionalLineSearch;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Time;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 双向线路搜索与原有单向 BFS 的等价性
+ * 路网为固定种子随机生成，包含环线（首末站相同）和同名的上下行线路
+ */
+class BidirectionalTransferSearchTest {
+
+    private static NetworkSnapshot snapshot;
+
+    @BeforeAll
+    static void buildNetwork() {
+        Random rnd = new Random(20240601);
+        int stationCount = 80;
+        List<Station> stations = new ArrayList<>();
+        for (int i = 1; i <= stationCount; i++) {
+            Station s = new Station();
+            s.setStationId(i);
+            s.setStationName("站点" + i);
+            s.setLongitude(113.0 + rnd.nextDouble() * 0.1);
+            s.setLatitude(28.1 + rnd.nextDouble() * 0.1);
+            stations.add(s);
+        }
+
+        List<Road> roads = new ArrayList<>();
+        List<LineStation> lineStations = new ArrayList<>();
+        int lineOrder = 1;
+        for (int i = 0; i < 30; i++) {
+            List<Integer> seq = new ArrayList<>();
+            int length = 4 + rnd.nextInt(8);
+            while (seq.size() < length) {
+                int sid = 1 + rnd.nextInt(stationCount);
+                if (!seq.contains(sid)) seq.add(sid);
+            }
+            if (i % 7 == 0) seq.add(seq.get(0)); // 环线
+            addLine(roads, lineStations, lineOrder++, i + "路", seq, 3 + rnd.nextInt(6));
+            if (i % 5 == 0) {
+                // 同名的另一个方向
+                List<Integer> reversed = new ArrayList<>(seq);
+                Collections.reverse(reversed);
+                addLine(roads, lineStations, lineOrder++, i + "路", reversed, 3 + rnd.nextInt(6));
+            }
+        }
+        snapshot = NetworkSnapshot.build(stations, roads, lineStations);
+    }
+
+    private static void addLine(List<Road> roads, List<LineStation> lineStations, int lineOrder, String name,
+                                List<Integer> seq, int interval) {
+        Road road = new Road();
+        road.setLineOrder(lineOrder);
+        road.setLineName(name);
+        road.setDirection("上行");
+        road.setStartTime(Time.valueOf("06:00:00"));
+        road.setFinishTime(Time.valueOf("22:00:00"));
+        road.setIntervalTime(interval);
+        roads.add(road);
+        for (int i = 0; i < seq.size(); i++) {
+            LineStation ls = new LineStation();
+            ls.setLineOrder(lineOrder);
+            ls.setStationId(seq.get(i));
+            ls.setSequenceNo(i + 1);
+            lineStations.add(ls);
+        }
+    }
+
+    private static PathFindingService service(boolean bidirectional) {
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", "bfs");
+        ReflectionTestUtils.setField(service, "bidirectional", bidirectional);
+        service.setPlanCacheSize(0);
+        service.publish(snapshot);
+        return service;
+    }
+
+    @Test
+    void routesMatchForwardSearch() {
+        PathFindingService forward = service(false);
+        PathFindingService bidirectional = service(true);
+        int compared = 0;
+        int nonEmpty = 0;
+        for (int s = 1; s <= 80; s += 3) {
+            for (int e = 2; e <= 80; e += 5) {
+                if (s == e) continue;
+                for (int mt = 1; mt <= 3; mt++) {
+                    List<RouteResultDTO> expected = withoutIds(forward.findRoutes("" + s, "" + e, mt));
+                    List<RouteResultDTO> actual = withoutIds(bidirectional.findRoutes("" + s, "" + e, mt));
+                    assertEquals(expected, actual, s + " -> " + e + " 换乘 " + mt);
+                    compared++;
+                    if (!expected.isEmpty()) nonEmpty++;
+                }
+            }
+        }
+        assertTrue(nonEmpty > compared / 2, "随机路网应有足够多可达的起终点");
+    }
+
+    @Test
+    void lineSequencesMatchForwardSearch() {
+        CompactGraph g = snapshot.getCompactGraph();
+        TransferTable tt = snapshot.getTransferTable();
+        BidirectionalLineSearch search = new BidirectionalLineSearch();
+        for (int s = 0; s < g.stationCount(); s += 7) {
+            for (int e = 1; e < g.stationCount(); e += 9) {
+                if (s == e) continue;
+                int[] starts = linesThrough(g, s);
+                boolean[] isEndLine = new boolean[g.lineCount()];
+                for (int l : linesThrough(g, e)) isEndLine[l] = true;
+                // 换乘 1~4 次，覆盖奇偶两种切分
+                for (int maxLines = 2; maxLines <= 5; maxLines++) {
+                    List<int[]> expected = forwardSearch(tt, starts, isEndLine, maxLines);
+                    List<int[]> actual = search.search(tt, starts, isEndLine, maxLines, null, null);
+                    assertEquals(expected.size(), actual.size(), s + " -> " + e + " 线路数 " + maxLines);
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertArrayEquals(expected.get(i), actual.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] linesThrough(CompactGraph g, int stop) {
+        int[] lines = new int[g.stopLinesEnd(stop) - g.stopLinesStart(stop)];
+        for (int i = 0; i < lines.length; i++) lines[i] = g.stopLineAt(g.stopLinesStart(stop) + i);
+        return lines;
+    }
+
+    // 与 PathFindingService.findTransferRoutes 相同的单向 BFS，作为对照
+    private static List<int[]> forwardSearch(TransferTable tt, int[] startLines, boolean[] isEndLine, int maxLines) {
+        List<int[]> results = new ArrayList<>();
+        Deque<int[]> queue = new ArrayDeque<>();
+        for (int l : startLines) queue.add(new int[]{l});
+        while (!queue.isEmpty()) {
+            int[] path = queue.poll();
+            if (path.length >= maxLines) continue;
+            int last = path[path.length - 1];
+            for (int e = tt.pairsStart(last); e < tt.pairsEnd(last); e++) {
+                int next = tt.pairLine(e);
+                if (Arrays.stream(path).anyMatch(l -> l == next)) continue;
+                int[] newPath = Arrays.copyOf(path, path.length + 1);
+                newPath[path.length] = next;
+                if (isEndLine[next]) {
+                    results.add(newPath);
+                } else if (newPath.length < maxLines) {
+                    queue.add(newPath);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static List<RouteResultDTO> withoutIds(List<RouteResultDTO> routes) {
+        for (RouteResultDTO r : routes) r.setRouteId(null);
+        return routes;
+    }
+}
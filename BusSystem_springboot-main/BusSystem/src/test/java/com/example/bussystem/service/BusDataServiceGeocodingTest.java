@@ -0,0 +1,101 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.repository.LineStationRepository;
+import com.example.bussystem.repository.RoadRepository;
+import com.example.bussystem.repository.StationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 新增站点时的地理编码限流：名额用完时等待有限时间，仍拿不到则不写入坐标（不伪造随机坐标）
+ */
+class BusDataServiceGeocodingTest {
+
+    private final StationRepository stationRepo = mock(StationRepository.class);
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private BusDataService service(int maxConcurrent, long acquireTimeoutMillis) {
+        BusDataService service = new BusDataService(maxConcurrent, acquireTimeoutMillis);
+        ReflectionTestUtils.setField(service, "stationRepo", stationRepo);
+        ReflectionTestUtils.setField(service, "roadRepo", mock(RoadRepository.class));
+        ReflectionTestUtils.setField(service, "lineStationRepo", mock(LineStationRepository.class));
+        ReflectionTestUtils.setField(service, "pathFindingService", mock(PathFindingService.class));
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        ReflectionTestUtils.setField(service, "geocodingRestTemplate", restTemplate);
+        return service;
+    }
+
+    @Test
+    void geocodedCoordinatesAreSaved() {
+        BusDataService service = service(1, 100);
+        when(restTemplate.getForObject(anyString(), eq(String.class)))
+                .thenReturn("{\"status\":0,\"result\":{\"location\":{\"lng\":112.9388,\"lat\":28.2282}}}");
+
+        String msg = service.addStation(1, "五一广场");
+        assertEquals("成功：站点 五一广场 已添加", msg);
+        Station saved = savedStation();
+        assertEquals(112.9388, saved.getLongitude());
+        assertEquals(28.2282, saved.getLatitude());
+        assertEquals(1, registry.get("bus.geocoding.requests").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void busyGeocodingLeavesCoordinatesEmpty() throws Exception {
+        BusDataService service = service(1, 50);
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplate.getForObject(anyString(), eq(String.class))).thenAnswer(inv -> {
+            inFlight.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "{\"status\":0,\"result\":{\"location\":{\"lng\":112.9,\"lat\":28.2}}}";
+        });
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // 第一个请求占住唯一的名额
+            Future<String> first = pool.submit(() -> service.addStation(1, "五一广场"));
+            assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+
+            long begin = System.nanoTime();
+            String msg = service.addStation(2, "黄兴广场");
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            assertTrue(msg.startsWith("成功") && msg.contains("坐标暂未填写"), msg);
+            assertTrue(waitedMillis >= 40, "应等待一段时间再放弃: " + waitedMillis + "ms");
+            Station saved = savedStation();
+            assertEquals(2, saved.getStationId());
+            assertNull(saved.getLongitude());
+            assertNull(saved.getLatitude());
+            assertEquals(1, registry.get("bus.geocoding.requests").tag("outcome", "throttled").timer().count());
+
+            release.countDown();
+            assertEquals("成功：站点 五一广场 已添加", first.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+        // 名额已归还，之后的请求照常获取坐标
+        assertEquals("成功：站点 芙蓉广场 已添加", service.addStation(3, "芙蓉广场"));
+    }
+
+    private Station savedStation() {
+        ArgumentCaptor<Station> captor = ArgumentCaptor.forClass(Station.class);
+        verify(stationRepo, atLeastOnce()).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.support.SyntheticNetwork;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 规划服务的运行指标：记录到注入的注册表，同一组标签只注册一个计时器
+ */
+class PlannerMetricsTest {
+
+    private static NetworkSnapshot snapshot;
+    private static List<Integer> ids;
+
+    @BeforeAll
+    static void buildNetwork() {
+        snapshot = SyntheticNetwork.generate(5, 600, 120).snapshot();
+        ids = new ArrayList<>(snapshot.getStationToLinesMap().keySet());
+        Collections.sort(ids);
+    }
+
+    @Test
+    void recordsIntoInjectedRegistry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PathFindingService service = new PathFindingService();
+        service.setMeterRegistry(registry);
+        service.setPlanCacheSize(0);
+        service.publish(snapshot);
+
+        for (int i = 0; i < 20; i++) {
+            service.findRoutes("" + ids.get(i), "" + ids.get(ids.size() - 1 - i), 1);
+        }
+        long recorded = 0;
+        for (Timer t : registry.find("bus.planner.requests").tag("mode", "station").timers()) {
+            recorded += t.count();
+        }
+        assertEquals(20, recorded);
+        // outcome 只有 found / empty 两种取值，计时器不随请求数增长
+        assertTrue(registry.find("bus.planner.requests").timers().size() <= 2);
+        assertEquals(1, registry.find("bus.planner.candidates").summaries().size());
+        assertEquals(snapshot.getStationMap().size(),
+                registry.get("bus.snapshot.stations").gauge().value());
+        service.shutdown();
+    }
+
+    @Test
+    void tagsTheEngineThatActuallyRan() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", "csa");
+        service.setMeterRegistry(registry);
+        service.setPlanCacheSize(0);
+        service.publish(snapshot);
+
+        // 同一线路的首末站，不会因换乘次数不够被提前拒绝，两种查询都会执行搜索
+        List<Integer> line = snapshot.getLineToStationsMap().values().iterator().next();
+        String s = "" + line.get(0);
+        String e = "" + line.get(line.size() - 1);
+        service.findRoutes(s, e, 1);
+        service.findRoutes(s, e, 1, LocalTime.of(8, 0));
+        // 配置为 csa 时，不带出发时刻的查询由 raptor 完成
+        assertEquals(1, count(registry.find("bus.planner.requests").tags("mode", "station", "engine", "raptor").timers()));
+        assertEquals(1, count(registry.find("bus.planner.requests").tags("mode", "timed", "engine", "csa").timers()));
+        assertTrue(registry.find("bus.planner.requests").tag("mode", "station").tag("engine", "csa").timers().isEmpty());
+        assertNotNull(registry.find("bus.planner.candidates").tag("engine", "raptor").summary());
+        assertNotNull(registry.find("bus.planner.candidates").tag("engine", "csa").summary());
+        service.shutdown();
+    }
+
+    @Test
+    void timesBackgroundMatrixBuild() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PathFindingService service = new PathFindingService();
+        service.setMeterRegistry(registry);
+        // 新生成的快照还没有最少换乘矩阵，发布后在后台构建
+        service.publish(SyntheticNetwork.generate(5, 600, 120).snapshot());
+
+        Timer build = registry.get("bus.snapshot.matrix.build").timer();
+        for (int i = 0; i < 200 && build.count() == 0; i++) Thread.sleep(50);
+        assertEquals(1, build.count());
+        assertTrue(build.totalTime(TimeUnit.NANOSECONDS) > 0);
+        service.shutdown();
+    }
+
+    @Test
+    void defaultInstanceDoesNotTouchGlobalRegistry() {
+        PathFindingService service = new PathFindingService();
+        service.publish(snapshot);
+        service.findRoutes("" + ids.get(0), "" + ids.get(1), 1);
+        assertNull(Metrics.globalRegistry.find("bus.planner.requests").timer());
+        assertNull(Metrics.globalRegistry.find("bus.snapshot.stations").gauge());
+        service.shutdown();
+    }
+
+    private static long count(Collection<Timer> timers) {
+        long total = 0;
+        for (Timer t : timers) total += t.count();
+        return total;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 默认引擎 raptor 与旧版 bfs 的等价性
+ * 两者在同一起终点上的 Pareto 前沿（换乘不超过 k 次时的最短耗时，k = 0..maxTransfers）应当一致；
+ * 具体方案的条数和顺序可以不同（bfs 还按乘坐站数保留更多互不支配的方案）。
+ * bfs 不支持步行换乘，路网按只允许同站换乘构建。
+ */
+class RaptorBfsEquivalenceTest {
+
+    private static PathFindingService service(NetworkSnapshot snapshot, String engine) {
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", engine);
+        service.setPlanCacheSize(0);
+        service.publish(snapshot);
+        return service;
+    }
+
+    @Test
+    void paretoFrontsMatchBfs() {
+        for (long seed : new long[]{5, 11}) {
+            SyntheticNetwork network = SyntheticNetwork.generate(seed, 600, 120);
+            NetworkSnapshot snapshot = NetworkSnapshot.build(
+                    network.getStations(), network.getRoads(), network.getRelations(), 0);
+            PathFindingService bfs = service(snapshot, "bfs");
+            PathFindingService raptor = service(snapshot, "raptor");
+
+            List<Integer> ids = new ArrayList<>(snapshot.getStationToLinesMap().keySet());
+            Collections.sort(ids);
+            Random rnd = new Random(seed);
+            int nonEmpty = 0;
+            int queries = 200;
+            for (int i = 0; i < queries; i++) {
+                String s = "" + ids.get(rnd.nextInt(ids.size()));
+                String e = "" + ids.get(rnd.nextInt(ids.size()));
+                int mt = i % 4;
+                List<RouteResultDTO> expected = bfs.findRoutes(s, e, mt);
+                List<RouteResultDTO> actual = raptor.findRoutes(s, e, mt);
+                assertArrayEquals(front(expected, mt), front(actual, mt),
+                        "种子 " + seed + ": " + s + " -> " + e + " 换乘 " + mt);
+                if (!expected.isEmpty()) nonEmpty++;
+            }
+            assertTrue(nonEmpty > queries / 2, "合成路网应有足够多可达的起终点");
+        }
+    }
+
+    @Test
+    void walkingTransfersNeverMakeRaptorWorse() {
+        SyntheticNetwork network = SyntheticNetwork.generate(7, 600, 120);
+        NetworkSnapshot snapshot = network.snapshot();
+        PathFindingService bfs = service(snapshot, "bfs");
+        PathFindingService raptor = service(snapshot, "raptor");
+
+        List<Integer> ids = new ArrayList<>(snapshot.getStationToLinesMap().keySet());
+        Collections.sort(ids);
+        Random rnd = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            String s = "" + ids.get(rnd.nextInt(ids.size()));
+            String e = "" + ids.get(rnd.nextInt(ids.size()));
+            int mt = i % 3;
+            int[] expected = front(bfs.findRoutes(s, e, mt), mt);
+            int[] actual = front(raptor.findRoutes(s, e, mt), mt);
+            for (int k = 0; k <= mt; k++) {
+                // 步行换乘只会增加选择：bfs 能到的，raptor 也能到且不更慢
+                if (expected[k] >= 0) {
+                    assertTrue(actual[k] >= 0 && actual[k] <= expected[k],
+                            s + " -> " + e + " 换乘 " + k + ": bfs " + expected[k] + ", raptor " + actual[k]);
+                }
+            }
+        }
+    }
+
+    // front[k]：换乘不超过 k 次的方案中的最短耗时，没有方案为 -1
+    private static int[] front(List<RouteResultDTO> routes, int maxTransfers) {
+        int[] front = new int[maxTransfers + 1];
+        for (int k = 0; k <= maxTransfers; k++) {
+            int best = -1;
+            for (RouteResultDTO r : routes) {
+                if (r.getTransfers() <= k && (best < 0 || r.getDuration() < best)) best = r.getDuration();
+            }
+            front[k] = best;
+        }
+        return front;
+    }
+}
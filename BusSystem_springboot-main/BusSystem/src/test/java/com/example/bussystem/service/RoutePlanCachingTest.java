@@ -0,0 +1,86 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 服务层的规划缓存：命中时返回新的 DTO，路网替换后重新计算
+ */
+class RoutePlanCachingTest {
+
+    private static final SyntheticNetwork NETWORK = SyntheticNetwork.generate(5, 600, 120);
+
+    private static PathFindingService service(NetworkSnapshot snapshot) {
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", "raptor");
+        service.setPlanCacheSize(100);
+        service.publish(snapshot);
+        return service;
+    }
+
+    // 取一对有方案的起终点
+    private static String[] reachablePair(PathFindingService service, NetworkSnapshot snapshot) {
+        List<Integer> ids = new ArrayList<>(snapshot.getStationToLinesMap().keySet());
+        Collections.sort(ids);
+        Random rnd = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            String s = "" + ids.get(rnd.nextInt(ids.size()));
+            String e = "" + ids.get(rnd.nextInt(ids.size()));
+            if (!s.equals(e) && !service.findRoutes(s, e, 2).isEmpty()) return new String[]{s, e};
+        }
+        throw new AssertionError("合成路网中找不到可达的起终点");
+    }
+
+    @Test
+    void cacheHitsReturnFreshResults() {
+        NetworkSnapshot snapshot = NETWORK.snapshot();
+        PathFindingService service = service(snapshot);
+        String[] pair = reachablePair(service, snapshot);
+        service.getPlanCache().invalidateAll();
+
+        List<RouteResultDTO> first = service.findRoutes(pair[0], pair[1], 2);
+        long hits = service.getPlanCache().getHits();
+        RouteResultDTO original = first.get(0);
+        int duration = original.getDuration();
+        // 调用方修改返回值不应影响后续请求
+        original.setRouteId(null);
+        original.setDuration(-1);
+        original.getSegments().clear();
+
+        List<RouteResultDTO> second = service.findRoutes(pair[0], pair[1], 2);
+        assertEquals(hits + 1, service.getPlanCache().getHits());
+        assertEquals(first.size(), second.size());
+        RouteResultDTO again = second.get(0);
+        assertNotSame(original, again);
+        assertNotNull(again.getRouteId());
+        assertEquals(duration, again.getDuration());
+        assertFalse(again.getSegments().isEmpty());
+
+        List<RouteResultDTO> third = service.findRoutes(pair[0], pair[1], 2);
+        assertNotEquals(again.getRouteId(), third.get(0).getRouteId(), "每次请求的方案编号都是新的");
+    }
+
+    @Test
+    void publishInvalidatesCachedPlans() {
+        NetworkSnapshot snapshot = NETWORK.snapshot();
+        PathFindingService service = service(snapshot);
+        String[] pair = reachablePair(service, snapshot);
+        assertTrue(service.getPlanCache().size() > 0);
+
+        service.publish(NETWORK.snapshot());
+        assertEquals(0, service.getPlanCache().size());
+        long misses = service.getPlanCache().getMisses();
+        assertFalse(service.findRoutes(pair[0], pair[1], 2).isEmpty());
+        assertEquals(misses + 1, service.getPlanCache().getMisses());
+    }
+}
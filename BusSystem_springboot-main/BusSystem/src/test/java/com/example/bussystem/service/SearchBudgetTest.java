@@ -0,0 +1,147 @@
+package com.example.bussystem.service;
+
+import com.example.bussystem.dto.RouteResultDTO;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.support.SyntheticNetwork;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 搜索预算：预算很小时提前结束，返回截止时已找到的方案并标记 partial，不完整的结果不进缓存
+ * 只按展开状态数限制（不限时），结果与机器快慢无关
+ */
+class SearchBudgetTest {
+
+    private static final int MAX_TRANSFERS = 3;
+
+    private static NetworkSnapshot snapshot;
+    private static List<Integer> ids;
+
+    @BeforeAll
+    static void buildNetwork() {
+        SyntheticNetwork network = SyntheticNetwork.generate(13, 2_000, 400);
+        snapshot = network.snapshot();
+        snapshot.buildTransferMatrix();
+        ids = new ArrayList<>(snapshot.getStationToLinesMap().keySet());
+        Collections.sort(ids);
+    }
+
+    private static PathFindingService service(String engine, long maxStates) {
+        PathFindingService service = new PathFindingService();
+        ReflectionTestUtils.setField(service, "engine", engine);
+        ReflectionTestUtils.setField(service, "budgetMaxStates", maxStates);
+        ReflectionTestUtils.setField(service, "budgetTimeoutMillis", 0L);
+        service.setPlanCacheSize(100);
+        service.publish(snapshot);
+        return service;
+    }
+
+    @Test
+    void exhaustedBudgetReturnsBestSoFar() {
+        for (String engine : new String[]{"bfs", "raptor"}) {
+            PathFindingService full = service(engine, 0);
+            PathFindingService small = service(engine, 20);
+            Random rnd = new Random(13);
+            int partial = 0;
+            for (int i = 0; i < 100; i++) {
+                String s = "" + ids.get(rnd.nextInt(ids.size()));
+                String e = "" + ids.get(rnd.nextInt(ids.size()));
+                List<RouteResultDTO> expected = full.findRoutes(s, e, MAX_TRANSFERS);
+                List<RouteResultDTO> actual = small.findRoutes(s, e, MAX_TRANSFERS);
+                expected.forEach(r -> assertNull(r.getPartial(), "不限预算时结果完整"));
+                // 预算用完时一条方案都没找到，只能返回空列表，无处标记
+                if (actual.isEmpty()) continue;
+                if (actual.get(0).getPartial() == null) {
+                    // 预算足够时与不限预算的结果相同
+                    assertEquals(withoutIds(expected), withoutIds(actual), engine + ": " + s + " -> " + e);
+                    continue;
+                }
+                partial++;
+                for (RouteResultDTO r : actual) {
+                    assertEquals(Boolean.TRUE, r.getPartial());
+                    // 提前结束找到的方案不会比完整搜索的最优方案更好
+                    assertTrue(r.getDuration() >= best(expected, r.getTransfers()),
+                            engine + ": " + s + " -> " + e + " 换乘 " + r.getTransfers());
+                }
+            }
+            assertTrue(partial > 0, engine + " 应有查询用完预算后返回已找到的方案");
+            full.shutdown();
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void partialResultsAreNotCached() {
+        for (String engine : new String[]{"bfs", "raptor"}) {
+            PathFindingService small = service(engine, 20);
+            Random rnd = new Random(17);
+            int partial = 0;
+            for (int i = 0; i < 100 && partial < 5; i++) {
+                String s = "" + ids.get(rnd.nextInt(ids.size()));
+                String e = "" + ids.get(rnd.nextInt(ids.size()));
+                List<RouteResultDTO> first = small.findRoutes(s, e, MAX_TRANSFERS);
+                if (first.isEmpty() || first.get(0).getPartial() == null) continue;
+                partial++;
+                int size = small.getPlanCache().size();
+                long hits = small.getPlanCache().getHits();
+                List<RouteResultDTO> again = small.findRoutes(s, e, MAX_TRANSFERS);
+                // 第二次仍未命中缓存，重新计算，同样是不完整的结果
+                assertEquals(size, small.getPlanCache().size());
+                assertEquals(hits, small.getPlanCache().getHits());
+                assertEquals(Boolean.TRUE, again.get(0).getPartial());
+            }
+            assertTrue(partial > 0, engine + " 应有查询用完预算");
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void bfsFindsFewTransferRoutesFromEveryStartLineFirst() {
+        // 按层展开时，出现两次换乘的方案说明所有起点线路的一次换乘都已展开完，
+        // 此时直达和一次换乘的最优耗时应与完整搜索一致，不因先展开的起点线路耗光预算而缺失
+        PathFindingService oneTransfer = service("bfs", 0);
+        int checked = 0;
+        for (long maxStates : new long[]{50, 200, 1_000}) {
+            PathFindingService small = service("bfs", maxStates);
+            Random rnd = new Random(19);
+            for (int i = 0; i < 100; i++) {
+                String s = "" + ids.get(rnd.nextInt(ids.size()));
+                String e = "" + ids.get(rnd.nextInt(ids.size()));
+                List<RouteResultDTO> actual = small.findRoutes(s, e, MAX_TRANSFERS);
+                if (actual.isEmpty() || actual.get(0).getPartial() == null) continue;
+                if (actual.stream().noneMatch(r -> r.getTransfers() >= 2)) continue;
+                checked++;
+                List<RouteResultDTO> expected = oneTransfer.findRoutes(s, e, 1);
+                for (int k = 0; k <= 1; k++) {
+                    assertEquals(best(expected, k), best(actual, k),
+                            "预算 " + maxStates + ": " + s + " -> " + e + " 换乘 " + k);
+                }
+            }
+            small.shutdown();
+        }
+        assertTrue(checked > 0, "应有查询在展开两次换乘时用完预算");
+        oneTransfer.shutdown();
+    }
+
+    // 换乘不超过 transfers 次的完整结果中的最短耗时
+    private static int best(List<RouteResultDTO> routes, int transfers) {
+        int best = Integer.MAX_VALUE;
+        for (RouteResultDTO r : routes) {
+            if (r.getTransfers() <= transfers) best = Math.min(best, r.getDuration());
+        }
+        return best == Integer.MAX_VALUE ? 0 : best;
+    }
+
+    private static List<RouteResultDTO> withoutIds(List<RouteResultDTO> routes) {
+        for (RouteResultDTO r : routes) r.setRouteId(null);
+        return routes;
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.bussystem.support;
+
+import com.example.bussystem.entity.LineStation;
+import com.example.bussystem.entity.Road;
+import com.example.bussystem.entity.Station;
+import com.example.bussystem.graph.NetworkSnapshot;
+import com.example.bussystem.graph.StationSpatialIndex;
+import com.example.bussystem.repository.LineStationRepository;
+import com.example.bussystem.repository.RoadRepository;
+import com.example.bussystem.repository.StationRepository;
+import com.example.bussystem.service.PathFindingService;
+
+import java.sql.Time;
+import java.util.*;
+
+/**
+ * 城市规模的合成路网，用于压测和基准测试（现有的长沙数据只有几百个站点，体现不出搜索的指数级增长）
+ * 同一组参数和种子每次生成完全相同的数据。
+ *
+ * 生成方式：
+ *   - 站点按每站约 350 米的密度铺满一块以长沙为中心的方形区域，其中大部分聚集在若干“枢纽”周围
+ *   - 枢纽按 Zipf 分布分配权重，部分线路的起终点落在枢纽上，热门枢纽会经过几十条线路
+ *   - 其余线路优先从还没有线路经过的站点出发，使绝大部分站点都有公交
+ *   - 线路从起点出发，每步走向附近离终点更近的站点，形成大致沿直线、略有弯折的走向
+ *   - 线路成对生成上下行（同名、站点顺序相反），首末班和发车间隔在常见范围内随机
+ */
+public class SyntheticNetwork {
+
+    // 城市中心（长沙）
+    private static final double CENTER_LAT = 28.20;
+    private static final double CENTER_LNG = 112.97;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    // 平均站距(米)，决定区域大小
+    private static final double STATION_SPACING = 350.0;
+    // 聚集在枢纽周围的站点比例，及其分布的标准差(米)
+    private static final double CLUSTERED_RATIO = 0.6;
+    private static final double CLUSTER_SIGMA = 1500.0;
+    // 每个枢纽对应的站点数，及枢纽热门程度的 Zipf 指数
+    private static final int STATIONS_PER_HUB = 100;
+    private static final double HUB_SKEW = 0.5;
+    // 线路起点、终点落在枢纽上的概率
+    private static final double START_AT_HUB = 0.3;
+    private static final double END_AT_HUB = 0.4;
+    // 每条线路的站数范围
+    private static final int MIN_STOPS = 12;
+    private static final int MAX_STOPS = 45;
+    // 线路每一步在该半径(米)内选下一站，枢纽附近站点密集时也能保持正常站距
+    private static final double STEP_RADIUS = 700.0;
+    // 选下一站时，尚无线路经过的站点的距离折算系数
+    private static final double UNCOVERED_PREFERENCE = 0.85;
+    // 线路起终点的最小直线距离(米)
+    private static final double MIN_LINE_SPAN = 5000.0;
+
+    private static final String[] NAME_HEADS = {
+            "人民", "解放", "五一", "芙蓉", "韶山", "湘江", "岳麓", "星沙", "东风", "劳动",
+            "八一", "黄兴", "蔡锷", "曙光", "车站", "万家丽", "桐梓坡", "麓谷", "洞井", "红星",
+            "侯家塘", "左家塘", "砂子塘", "袁家岭", "伍家岭", "马王堆", "月湖", "新河", "金星", "望城"};
+    private static final String[] NAME_TAILS = {
+            "路口", "小区", "公园", "广场", "市场", "中学", "小学", "医院", "大道", "新村",
+            "路", "街", "桥", "站", "北", "南", "东", "西", "商场", "社区"};
+
+    private final List<Station> stations = new ArrayList<>();
+    private final List<Road> roads = new ArrayList<>();
+    private final List<LineStation> relations = new ArrayList<>();
+    // 枢纽站点ID，按热门程度降序
+    private final List<Integer> hubs = new ArrayList<>();
+
+    /** 城市规模：1 万个站点、2000 条线路（1000 对上下行） */
+    public static SyntheticNetwork cityScale(long seed) {
+        return generate(seed, 10_000, 2_000);
+    }
+
+    /**
+     * @param stationCount 站点数
+     * @param lineCount    线路数（上下行各算一条）
+     */
+    public static SyntheticNetwork generate(long seed, int stationCount, int lineCount) {
+        SyntheticNetwork network = new SyntheticNetwork();
+        Random rnd = new Random(seed);
+        int hubCount = Math.max(4, stationCount / STATIONS_PER_HUB);
+        double halfSide = Math.sqrt(stationCount) * STATION_SPACING / 2;
+
+        // 1. 枢纽中心及其 Zipf 权重
+        double[][] hubCenters = new double[hubCount][];
+        double[] hubWeights = new double[hubCount];
+        for (int h = 0; h < hubCount; h++) {
+            hubCenters[h] = new double[]{uniform(rnd, halfSide), uniform(rnd, halfSide)};
+            hubWeights[h] = Math.pow(h + 1, -HUB_SKEW);
+        }
+
+        // 2. 站点：大部分聚集在枢纽周围，其余均匀分布
+        Set<String> usedNames = new HashSet<>();
+        for (int i = 1; i <= stationCount; i++) {
+            double x, y;
+            if (rnd.nextDouble() < CLUSTERED_RATIO) {
+                double[] c = hubCenters[pick(rnd, hubWeights)];
+                x = clamp(c[0] + rnd.nextGaussian() * CLUSTER_SIGMA, halfSide);
+                y = clamp(c[1] + rnd.nextGaussian() * CLUSTER_SIGMA, halfSide);
+            } else {
+                x = uniform(rnd, halfSide);
+                y = uniform(rnd, halfSide);
+            }
+            Station s = new Station();
+            s.setStationId(i);
+            s.setStationName(uniqueName(rnd, usedNames));
+            s.setLatitude(CENTER_LAT + y / METERS_PER_DEGREE);
+            s.setLongitude(CENTER_LNG + x / (METERS_PER_DEGREE * Math.cos(Math.toRadians(CENTER_LAT))));
+            network.stations.add(s);
+        }
+
+        // 枢纽站点取离各中心最近的站点，改用枢纽名称便于按名称查询
+        StationSpatialIndex spatial = NetworkSnapshot.build(network.stations, List.of(), List.of())
+                .getStationSpatialIndex();
+        for (int h = 0; h < hubCount; h++) {
+            double lat = CENTER_LAT + hubCenters[h][1] / METERS_PER_DEGREE;
+            double lng = CENTER_LNG + hubCenters[h][0] / (METERS_PER_DEGREE * Math.cos(Math.toRadians(CENTER_LAT)));
+            int sid = spatial.nearest(lat, lng, 1).get(0).stationId();
+            if (network.hubs.contains(sid)) continue;
+            network.hubs.add(sid);
+            network.stations.get(sid - 1).setStationName(NAME_HEADS[h % NAME_HEADS.length] + "枢纽" + (h + 1));
+        }
+        double[] hubPickWeights = new double[network.hubs.size()];
+        for (int h = 0; h < hubPickWeights.length; h++) hubPickWeights[h] = Math.pow(h + 1, -HUB_SKEW);
+
+        // 3. 线路：起终点部分落在枢纽，其余从尚无线路的站点出发，逐站走向终点
+        // 尚无线路经过的站点，按随机顺序依次取用
+        List<Integer> uncovered = new ArrayList<>();
+        for (int i = 1; i <= stationCount; i++) uncovered.add(i);
+        Collections.shuffle(uncovered, rnd);
+        boolean[] covered = new boolean[stationCount + 1];
+        int lineOrder = 1;
+        int routeNo = 1;
+        while (lineOrder <= lineCount) {
+            List<Integer> seq = null;
+            while (seq == null) {
+                int from;
+                if (rnd.nextDouble() < START_AT_HUB) {
+                    from = network.hubs.get(pick(rnd, hubPickWeights));
+                } else {
+                    while (!uncovered.isEmpty() && covered[uncovered.get(uncovered.size() - 1)]) {
+                        uncovered.remove(uncovered.size() - 1);
+                    }
+                    from = uncovered.isEmpty() ? 1 + rnd.nextInt(stationCount) : uncovered.get(uncovered.size() - 1);
+                }
+                int to = rnd.nextDouble() < END_AT_HUB ? network.hubs.get(pick(rnd, hubPickWeights)) : 1 + rnd.nextInt(stationCount);
+                if (spatial.distance(from, to) < MIN_LINE_SPAN) continue;
+                seq = walk(spatial, rnd, from, to, covered);
+                // 起点无论如何都算作已尝试，避免反复从走不出去的站点出发
+                covered[from] = true;
+            }
+            for (int sid : seq) covered[sid] = true;
+            String name = routeNo < 1000 ? routeNo + "路" : String.valueOf(routeNo);
+            Time start = Time.valueOf(String.format("%02d:%02d:00", 5 + rnd.nextInt(3), rnd.nextInt(4) * 15));
+            Time finish = Time.valueOf(String.format("%02d:%02d:00", 20 + rnd.nextInt(4), rnd.nextInt(4) * 15));
+            int interval = 3 + rnd.nextInt(13);
+            network.addLine(lineOrder++, name, "上", start, finish, interval, seq);
+            if (lineOrder <= lineCount) {
+                List<Integer> reversed = new ArrayList<>(seq);
+                Collections.reverse(reversed);
+                network.addLine(lineOrder++, name, "下", start, finish, interval, reversed);
+            }
+            routeNo++;
+        }
+        return network;
+    }
+
+    // 从 from 出发，每步在附近站点中选离 to 最近且更近的一个（略偏向尚无线路的站点）；站数不足时返回 null 重新抽取
+    private static List<Integer> walk(StationSpatialIndex spatial, Random rnd, int from, int to, boolean[] covered) {
+        int maxStops = MIN_STOPS + rnd.nextInt(MAX_STOPS - MIN_STOPS + 1);
+        List<Integer> seq = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        int current = from;
+        seq.add(current);
+        visited.add(current);
+        while (current != to && seq.size() < maxStops) {
+            double here = spatial.distance(current, to);
+            int best = -1;
+            double bestDist = here;
+            for (StationSpatialIndex.Neighbor n : spatial.withinRadiusOf(current, STEP_RADIUS)) {
+                if (visited.contains(n.stationId())) continue;
+                // 略带随机的比较，让线路不完全笔直
+                double d = spatial.distance(n.stationId(), to) * (0.9 + rnd.nextDouble() * 0.2)
+                        * (covered[n.stationId()] ? 1.0 : UNCOVERED_PREFERENCE);
+                if (d < bestDist) {
+                    best = n.stationId();
+                    bestDist = d;
+                }
+            }
+            if (best < 0) break;
+            current = best;
+            seq.add(current);
+            visited.add(current);
+        }
+        return seq.size() >= MIN_STOPS ? seq : null;
+    }
+
+    private void addLine(int lineOrder, String name, String direction, Time start, Time finish, int interval,
+                         List<Integer> seq) {
+        Road road = new Road();
+        road.setLineOrder(lineOrder);
+        road.setLineName(name);
+        road.setDirection(direction);
+        road.setStartTime(start);
+        road.setFinishTime(finish);
+        road.setIntervalTime(interval);
+        roads.add(road);
+        for (int i = 0; i < seq.size(); i++) {
+            LineStation ls = new LineStation();
+            ls.setLineOrder(lineOrder);
+            ls.setStationId(seq.get(i));
+            ls.setSequenceNo(i + 1);
+            relations.add(ls);
+        }
+    }
+
+    // 站名由常见地名前缀和后缀组合，重名时追加序号
+    private static String uniqueName(Random rnd, Set<String> used) {
+        String base = NAME_HEADS[rnd.nextInt(NAME_HEADS.length)] + NAME_TAILS[rnd.nextInt(NAME_TAILS.length)];
+        String name = base;
+        for (int n = 2; !used.add(name); n++) name = base + n;
+        return name;
+    }
+
+    private static int pick(Random rnd, double[] weights) {
+        double total = 0;
+        for (double w : weights) total += w;
+        double r = rnd.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+    private static double uniform(Random rnd, double halfSide) {
+        return (rnd.nextDouble() * 2 - 1) * halfSide;
+    }
+
+    private static double clamp(double v, double halfSide) {
+        return Math.max(-halfSide, Math.min(halfSide, v));
+    }
+
+    public NetworkSnapshot snapshot() {
+        return NetworkSnapshot.build(stations, roads, relations);
+    }
+
+    /** 直接发布到规划服务，不经过数据库 */
+    public void loadInto(PathFindingService service) {
+        service.publish(snapshot());
+    }
+
+    /** 通过现有的 Repository 写入数据库，之后可调用 PathFindingService.loadData() 全量加载 */
+    public void saveTo(StationRepository stationRepo, RoadRepository roadRepo, LineStationRepository lineStationRepo) {
+        stationRepo.saveAll(stations);
+        roadRepo.saveAll(roads);
+        lineStationRepo.saveAll(relations);
+    }
+
+    public List<Station> getStations() { return stations; }
+    public List<Road> getRoads() { return roads; }
+    public List<LineStation> getRelations() { return relations; }
+    public List<Integer> getHubs() { return hubs; }
+}
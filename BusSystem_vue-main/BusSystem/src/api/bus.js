@@ -41,6 +41,12 @@ export const searchStations = (keyword) => {
   return request.get('/api/admin/station', { params: { keyword } });
 };
 
+// 站点输入提示 (支持站名前缀和拼音首字母，返回 ID、名称和坐标)
+// GET /api/stations/suggest?prefix=...&limit=...
+export const suggestStations = (prefix, limit = 10) => {
+  return request.get('/api/stations/suggest', { params: { prefix, limit } });
+};
+
 // 获取所有站点 (兼容旧调用，本质是搜空字符串)
 export const getAllStations = () => searchStations(null);
 
@@ -93,11 +99,25 @@ export const deleteLine = (id) => {
 // ==========================================
 
 // 路径规划查询
-// GET /api/routes/plan?start=...&end=...
-export const planRoute = (start, end) => {
+// GET /api/routes/plan?start=...&end=...&departAt=HH:mm (departAt 可选，填写后按实际班次计算等车时间)
+export const planRoute = (start, end, departAt) => {
   return request.get('/api/routes/plan', {
-    params: { start, end }
+    params: { start, end, departAt }
   });
 };
 
-export default request;
\ No newline at end of file
+// 按坐标规划路线 (起终点步行范围内的站点都可作为上下车站)
+// GET /api/routes/plan/location?fromLat=...&fromLng=...&toLat=...&toLng=...
+export const planRouteByLocation = (fromLat, fromLng, toLat, toLng) => {
+  return request.get('/api/routes/plan/location', {
+    params: { fromLat, fromLng, toLat, toLng }
+  });
+};
+
+// 附近站点
+// GET /api/stations/nearby?lat=...&lng=...&k=...
+export const getNearbyStations = (lat, lng, k = 5) => {
+  return request.get('/api/stations/nearby', { params: { lat, lng, k } });
+};
+
+export default request;